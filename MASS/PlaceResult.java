@@ -0,0 +1,28 @@
+package edu.uwb.css534;
+
+import java.io.Serializable;
+
+/**
+ * What a TSPPlace reports: the cost of its best tour and its place index, plus the tour
+ * itself only when it beats the global best the master passed in.
+ */
+public class PlaceResult implements Serializable {
+    double cost;
+    int place;
+    // acceptance rate of the place's last step
+    double acceptance;
+    // cost of the place's current tour
+    double current;
+    // moves the place proposed, accepted and improved with since it was created
+    long proposed;
+    long accepted;
+    long improving;
+    // null unless the tour beats the global best
+    int[] tour;
+
+    PlaceResult(double cost, int place, int[] tour) {
+        this.cost = cost;
+        this.place = place;
+        this.tour = tour;
+    }
+}
@@ -4,9 +4,17 @@ import edu.uw.bothell.css.dsl.MASS.*;
 import edu.uw.bothell.css.dsl.MASS.Places;
 import edu.uw.bothell.css.dsl.MASS.logging.LogLevel;
 import edu.uw.bothell.css.dsl.MASS.matrix.MatrixUtilities;
+import sa.core.Checkpoint;
+import sa.core.CityLoader;
+import sa.core.CoolingSchedule;
+import sa.core.CoolingSchedules;
+import sa.core.DistanceStore;
+import sa.core.Moves;
+import sa.core.Options;
+import sa.core.Tours;
+import sa.core.Trace;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
@@ -18,34 +26,32 @@ public class SAMass implements Serializable {
     private static final int NUM_PLACES_Y = 10;
     private static final double INIT_TEMPERATURE = 1000; // The cooling rate for the simulated annealing algorithm
     private static final double COOLING_RATE = 0.003; // The cooling rate for the simulated annealing algorithm
+    private static final int DIFFUSION_INTERVAL = 10; // Temperature steps between best tour exchanges of neighbouring places
+    private static final int CHECKPOINT_INTERVAL = 1000; // Temperature steps between checkpoints
+    // north, south, east and west neighbours on the place grid
+    private static final Vector<int[]> NEIGHBOURS = new Vector<>(Arrays.asList(
+            new int[]{0, 1}, new int[]{0, -1}, new int[]{1, 0}, new int[]{-1, 0}));
 
     /**
-     * @return list of cities with a pair of index
+     * @param args key=value options: cities=cities.txt or a TSPLIB .tsp file, move=swap|2opt, neighbours=k,
+     *             seed=master seed of the places' random streams, initial=random|hilbert|nearest|greedy tour,
+     *             diffuse=temperature steps between best tour exchanges of neighbouring places,
+     *             cooling=geometric|lundy-mees|acceptance, stagnation=steps without a new best before
+     *             reheating or stopping, reheats, reheat, trace=master step trace file, .csv for text,
+     *             otherwise binary, checkpoint=checkpoint file of the master, places add their index and
+     *             alternate between two slots,
+     *             checkpoint-steps=steps between checkpoints, resume=true to continue from the checkpoints
      */
-    private static List<int[]> readCities() {
-        // Create a list of cities and read cities from file
-        String citiesFile = "cities.txt";
-        File file = new File(citiesFile);
-        List<int[]> cities = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new FileInputStream(file))) {
-            while (scanner.hasNext()) {
-                String line = scanner.next();
-                if (!"".equals(line.trim())) {
-                    String[] lineArgs = line.split("=");
-                    String[] positions = lineArgs[1].split(",");
-                    cities.add(new int[]{Integer.parseInt(positions[0]), Integer.parseInt(positions[1])});
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        System.out.println(">>> Read Cities size=" + cities.size() + " on=" + file.getAbsolutePath());
-        return cities;
-    }
-
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args, 0);
         // read city list
-        final List<int[]> cities = readCities();
+        File file = new File(options.get("cities", "cities.txt"));
+        final DistanceStore distances = DistanceStore.create(CityLoader.load(file));
+        System.out.println(">>> Read Cities size=" + distances.size() + " on=" + file.getAbsolutePath());
+        int diffuse = Math.max(1, options.getInt("diffuse", DIFFUSION_INTERVAL));
+        String initial = options.get("initial", Tours.RANDOM);
+        Object placeInit = new Object[]{distances, options.get("move", Moves.SWAP),
+                options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS), options.getLong("seed", 534), initial};
         // init MASS library
         MASS.setNodeFilePath(NODE_FILE);
         MASS.setLoggingLevel(LogLevel.WARN);
@@ -53,46 +59,128 @@ public class SAMass implements Serializable {
         MASS.init();
         // start time
         long startTime = System.currentTimeMillis();
-        // Create places, init with cities and random seed in Object[]
-        Places places = new Places(1, TSPPlace.class.getName(), cities, NUM_PLACES_X, NUM_PLACES_Y);
+        // Create places, init with the city distances and the move to anneal with
+        Places places = new Places(1, TSPPlace.class.getName(), placeInit, NUM_PLACES_X, NUM_PLACES_Y);
 //        int placeNum = places.getPlacesSize();
         int placeNum = MatrixUtilities.getMatrixSize(places.getSize());
         System.out.println("places=" + placeNum);
         // Simulated annealing algorithm
-        double temp = INIT_TEMPERATURE;
+        // a constructed initial tour starts at a matching lower temperature
+        CoolingSchedule cooling = CoolingSchedules.create(options, Tours.temperature(initial, INIT_TEMPERATURE), COOLING_RATE);
+        double temp = cooling.initialTemperature();
         double logTemp = temp;
         double bestCost = Double.MAX_VALUE;
-        List<Integer> bestSolution = null;
-        while (temp > 1) {
-            //get all final solution
-            Object[] placeCallAllObjs = new Object[placeNum];
-            Object placeArg = new Object[]{temp, bestSolution};
-            for (int i = 0; i < placeNum; i++) {
-                placeCallAllObjs[i] = placeArg;
+        int[] bestSolution = null;
+        Object[] placeCallAllObjs = new Object[placeNum];
+        int step = 0;
+        // the master saves the temperature, schedule and best tour, every place its own chain.
+        // Places write every other checkpoint to the other of two slots, and the master's
+        // checkpoint naming a slot is only written once the places' files in it are on disk,
+        // so after a crash the master's checkpoint always matches complete place checkpoints.
+        String checkpoint = options.get("checkpoint", null);
+        int checkpointSteps = Math.max(1, options.getInt("checkpoint-steps", CHECKPOINT_INTERVAL));
+        int slot = 0;
+        // master checkpoint of the places' last checkpoint, written once theirs are durable
+        Checkpoint pending = null;
+        if (checkpoint != null && options.getBoolean("resume", false)) {
+            Checkpoint saved = Checkpoint.read(new File(checkpoint));
+            saved.restoreDriver(null, cooling);
+            temp = saved.temperature;
+            logTemp = temp;
+            step = (int) saved.extra[0];
+            bestCost = saved.bestCost;
+            bestSolution = saved.bestTour;
+            // keep the slot the master names until the next checkpoint is durable
+            slot = 1 - (int) saved.extra[1];
+            Arrays.fill(placeCallAllObjs, slotFile(checkpoint, (int) saved.extra[1]));
+            for (Object placeStep : (Object[]) places.callAll(TSPPlace.RESUME, placeCallAllObjs)) {
+                if ((Long) placeStep != step) {
+                    throw new IOException("Place checkpoint of step " + placeStep + " does not match step " + step);
+                }
             }
-            Object[] solutions = (Object[]) places.callAll(TSPPlace.SET_TEMP_AND_GENERATE_SOLUTION, placeCallAllObjs);
-            for (Object s : solutions) {
-//                System.out.println(s.getClass().getName());
-                List<Integer> solution = (List<Integer>) s;
-                double cost = TSPPlace.calculateCost(solution, cities);
-                if (cost < bestCost) {
-                    bestSolution = solution;
-                    bestCost = cost;
-                    System.out.println(">>> New solution cost: " + bestCost + " solution: " + bestSolution);
+            System.out.println(">>> Resumed at step " + step + " temperature = " + temp);
+        }
+        Trace trace = Trace.open(options.get("trace", null), -1);
+        while (!cooling.isFrozen(temp)) {
+            // places only send their tour when it beats bestCost
+            Object placeArg = new double[]{temp, bestCost};
+            Arrays.fill(placeCallAllObjs, placeArg);
+            long callStart = System.nanoTime();
+            Object[] results = (Object[]) places.callAll(TSPPlace.SET_TEMP_AND_GENERATE_SOLUTION, placeCallAllObjs);
+            // callAll returns when every place has annealed its step, so this includes the slowest place
+            trace.communication("callAll", callStart);
+            double acceptance = 0;
+            double current = Double.MAX_VALUE;
+            long proposed = 0, accepted = 0, improving = 0;
+            for (Object r : results) {
+                PlaceResult result = (PlaceResult) r;
+                acceptance += result.acceptance;
+                current = Math.min(current, result.current);
+                proposed += result.proposed;
+                accepted += result.accepted;
+                improving += result.improving;
+                if (result.tour != null && result.cost < bestCost) {
+                    bestSolution = result.tour.clone();
+                    bestCost = result.cost;
+                    System.out.println(">>> New solution cost: " + bestCost + " place: " + result.place);
                 }
             }
+            trace.step(temp, current, bestCost, acceptance / results.length, proposed, accepted, improving);
+            // good tours spread to neighbouring places instead of going through the master
+            if (++step % diffuse == 0) {
+                long exchangeStart = System.nanoTime();
+                places.exchangeAll(1, TSPPlace.GET_BEST, NEIGHBOURS);
+                places.callAll(TSPPlace.ADOPT_NEIGHBOUR_BEST);
+                trace.communication("exchangeAll", exchangeStart);
+            }
             // Cool down
-            temp *= 1 - COOLING_RATE;
+            cooling.observe(acceptance / results.length, bestCost);
+            temp = cooling.next(temp);
+            if (checkpoint != null && step % checkpointSteps == 0) {
+                // the previous checkpoint's writes have had a whole interval to finish
+                commit(places, pending, checkpoint);
+                Arrays.fill(placeCallAllObjs, new Object[]{slotFile(checkpoint, slot), (long) step});
+                places.callAll(TSPPlace.CHECKPOINT, placeCallAllObjs);
+                pending = Checkpoint.ofDriver(temp, bestCost, bestSolution, bestCost, bestSolution, null, cooling,
+                        step, slot);
+                slot = 1 - slot;
+            }
             if (temp < logTemp * 0.8) {
                 logTemp = temp;
                 System.out.println(">>> temperature = " + temp);
             }
         }
+        long fixed = CoolingSchedules.fixedSteps(cooling.initialTemperature(), COOLING_RATE);
+        System.out.println(">>> Steps run: " + step + " of " + fixed + " fixed, moves saved: "
+                + (fixed - step) * TSPPlace.NUM_NEIGHBORS * placeNum);
+        commit(places, pending, checkpoint);
+        trace.close();
+        System.out.println(">>> " + trace.summary());
         // Print the best solution
-        System.out.println(">>> Best solution: " + bestSolution);
+        System.out.println(">>> Best solution: " + Arrays.toString(bestSolution));
         System.out.println(">>> Cost: " + bestCost); 
         System.out.println(">>> Time:" + ((System.currentTimeMillis()) - startTime) );
         // Finish MASS framework
         MASS.finish();
     }
+
+    /**
+     * Wait until the places' pending checkpoints are on disk, then write the master's
+     * checkpoint naming them.
+     *
+     * @param pending master checkpoint of the places' last checkpoint, or null for none
+     */
+    private static void commit(Places places, Checkpoint pending, String checkpoint) throws IOException {
+        if (pending != null) {
+            places.callAll(TSPPlace.FLUSH);
+            pending.write(new File(checkpoint));
+        }
+    }
+
+    /**
+     * @return file prefix of the places' checkpoints in a slot
+     */
+    private static String slotFile(String checkpoint, int slot) {
+        return checkpoint + ".slot" + slot;
+    }
 }
@@ -1,69 +1,51 @@
 package edu.uwb.css534;
 
 import edu.uw.bothell.css.dsl.MASS.Place;
+import sa.core.Annealer;
+import sa.core.Checkpoint;
+import sa.core.Checkpointer;
+import sa.core.DistanceStore;
+import sa.core.Moves;
+import sa.core.Rng;
+import sa.core.Tours;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class TSPPlace extends Place {
     // neighbors for each round of SA
-    private final static int NUM_NEIGHBORS = 100;
+    final static int NUM_NEIGHBORS = 100;
 
     public static final int SET_TEMP_AND_GENERATE_SOLUTION = 1; // A call to set a new temperature and generate solution
-    private final List<int[]> cities; // The distances between cities
-    private final Random rand;
-    private List<Integer> currentSolution; // The current solution
+    public static final int GET_BEST = 2; // Called by exchangeAll on a neighbour, returns its best tour
+    public static final int ADOPT_NEIGHBOUR_BEST = 3; // A call to continue from the best tour the neighbours sent
+    public static final int CHECKPOINT = 4; // A call to checkpoint the place, args Object[]{file prefix, step}
+    public static final int RESUME = 5; // A call to restore the place from its checkpoint, args the file prefix, returns its step
+    public static final int FLUSH = 6; // A call to wait until the place's checkpoints are on disk
+    // writes the checkpoints of all places in this JVM in the background
+    private static Checkpointer checkpointer;
+    private final DistanceStore distances; // The distances between cities
+    private final Annealer annealer; // Anneals the current solution in place
+    private final int index; // Place index in row-major order
+    // returned by every call and overwritten by the next one, so callMethod allocates nothing
+    private final PlaceResult result;
+    private final int[] tourOut;
 
+    /**
+     * @param obj Object[] of the city distances, the move name, the neighbours per city for 2-opt,
+     *            the master seed of the places' random streams and the initial tour constructor
+     */
     public TSPPlace(Object obj) {
         super();
-        cities = (List<int[]>) obj;
-        // random seed from current Place's index
-        long randSeed = (long) getIndex()[1] * Integer.MAX_VALUE + getIndex()[0];
-        System.out.println("init place randSeed=" + randSeed);
-        rand = new Random(randSeed);
-        currentSolution = initializeSolution(cities.size());
-    }
-
-    // Initialize solution with a simple path
-    private List<Integer> initializeSolution(int size) {
-        List<Integer> solution = new ArrayList<>();
-        for (int i = 0; i < size; i++) {
-            solution.add(i);
-        }
-        Collections.shuffle(solution, rand);
-        return solution;
-    }
-
-    private List<List<Integer>> generateNeighbors(List<Integer> currentSolution, Random rand) {
-        List<List<Integer>> neighbors = new ArrayList<>();
-        for (int i = 0; i < NUM_NEIGHBORS; i++) {
-            List<Integer> newSolution = new ArrayList<>(currentSolution);
-            int swapIndex1 = rand.nextInt(newSolution.size());
-            int swapIndex2 = rand.nextInt(newSolution.size());
-            Collections.swap(newSolution, swapIndex1, swapIndex2);
-            neighbors.add(newSolution);
-        }
-        return neighbors;
-    }
-
-    private double acceptanceProbability(double currentCost, double newCost, double temp) {
-        if (newCost < currentCost) {
-            return 1.0;
-        }
-        return Math.exp((currentCost - newCost) / temp);
-    }
-
-    // Calculate the cost of a solution
-    static double calculateCost(List<Integer> solution, List<int[]> cities) {
-        double sum = 0;
-        for (int i = 1; i < solution.size(); i++) {
-            int[] city1 = cities.get(solution.get(i - 1));
-            int[] city2 = cities.get(solution.get(i));
-            sum += Math.sqrt(Math.pow(city1[0] - city2[0], 2) + Math.pow(city1[1] - city2[1], 2));
-        }
-        return sum;
+        Object[] args = (Object[]) obj;
+        distances = (DistanceStore) args[0];
+        index = getIndex()[0] * getSize()[1] + getIndex()[1];
+        // the place's own stream of the master seed
+        Rng rng = Rng.stream((long) args[3], index);
+        annealer = new Annealer(distances, Moves.create((String) args[1], distances, (int) args[2]), rng);
+        annealer.reset(Tours.create((String) args[4], distances, (int) args[2], rng));
+        tourOut = new int[distances.size()];
+        result = new PlaceResult(annealer.bestCost(), index, null);
     }
 
     // The call method handles all calls from the Places object
@@ -72,23 +54,76 @@ public class TSPPlace extends Place {
 //        System.out.println("callMethod id=" + methodId + ",args=" + args);
         switch (methodId) {
             case SET_TEMP_AND_GENERATE_SOLUTION:
-                // temperature
-                double temp = (double) ((Object[]) args)[0];
-                List<Integer> solution = (List<Integer>) ((Object[]) args)[1];
-                if (solution != null) {
-                    currentSolution = solution;
-                }
-                List<List<Integer>> newSolutions = generateNeighbors(currentSolution, rand);
-                for (List<Integer> newSolution : newSolutions) {
-                    double newCost = calculateCost(newSolution, cities);
-                    double currentCost = calculateCost(currentSolution, cities);
-                    if (acceptanceProbability(currentCost, newCost, temp) > rand.nextDouble()) {
-                        currentSolution = newSolution;
+                // temperature and the global best cost
+                double[] step = (double[]) args;
+                annealer.step(step[0], NUM_NEIGHBORS);
+                return report(annealer.bestCost() < step[1]);
+            case GET_BEST:
+                return report(true);
+            case ADOPT_NEIGHBOUR_BEST:
+                PlaceResult best = null;
+                for (Object message : getInMessages()) {
+                    // neighbours outside the grid send nothing
+                    PlaceResult neighbour = (PlaceResult) message;
+                    if (neighbour != null && (best == null || neighbour.cost < best.cost)) {
+                        best = neighbour;
                     }
                 }
-                return currentSolution;
+                if (best != null && best.cost < annealer.bestCost()) {
+                    annealer.reset(best.tour);
+                }
+                return null;
+            case CHECKPOINT:
+                Object[] checkpoint = (Object[]) args;
+                checkpointer().submit(Checkpoint.file((String) checkpoint[0], index),
+                        annealer.checkpoint(index, 0, null, (Long) checkpoint[1]));
+                return null;
+            case FLUSH:
+                try {
+                    checkpointer().flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while flushing checkpoints", e);
+                }
+                return null;
+            case RESUME:
+                try {
+                    Checkpoint saved = Checkpoint.read(Checkpoint.file((String) args, index));
+                    annealer.restore(saved, null);
+                    return saved.extra[0];
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             default:
                 return null;
         }
     }
+
+    private static synchronized Checkpointer checkpointer() {
+        if (checkpointer == null) {
+            checkpointer = new Checkpointer();
+        }
+        return checkpointer;
+    }
+
+    /**
+     * Fill the reused result, copying the best tour into the reused buffer if asked to.
+     * The master and the neighbours read it before this place is called again.
+     */
+    private PlaceResult report(boolean withTour) {
+        result.cost = annealer.bestCost();
+        result.acceptance = annealer.acceptanceRate();
+        result.current = annealer.cost();
+        result.proposed = annealer.proposed();
+        result.accepted = annealer.accepted();
+        result.improving = annealer.improving();
+        result.tour = null;
+        if (withTour) {
+            annealer.copyBestTour(tourOut);
+            result.tour = tourOut;
+        }
+        return result;
+    }
 }
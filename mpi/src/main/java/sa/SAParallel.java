@@ -1,9 +1,21 @@
 package sa;
 
 import mpi.MPI;
+import mpi.Request;
+import sa.core.Annealer;
+import sa.core.Checkpoint;
+import sa.core.Checkpointer;
+import sa.core.CityLoader;
+import sa.core.CoolingSchedule;
+import sa.core.CoolingSchedules;
+import sa.core.DistanceStore;
+import sa.core.Moves;
+import sa.core.Options;
+import sa.core.Rng;
+import sa.core.Tours;
+import sa.core.Trace;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.*;
 
@@ -11,151 +23,473 @@ public class SAParallel {
     private static double INITIAL_TEMP = 1000.0;
     private static final double COOLING_RATE = 0.003;
     private static final int NEIGHBORS = 100;
+    // temperature steps between migrations in island mode
+    private static final int MIGRATION_INTERVAL = 10;
+    private static final int MIGRATION_TAG = 14;
+    // temperature steps between replica exchanges in tempering mode
+    private static final int EXCHANGE_INTERVAL = 10;
+    // default master seed of the ranks' random streams
+    private static final long MASTER_SEED = 534;
+    // temperature steps between checkpoints
+    private static final int CHECKPOINT_INTERVAL = 1000;
 
-    private List<Integer[]> cities;
+    private DistanceStore distances;
+    // migrated tours received and adopted by this rank in island mode
+    private int received;
+    private int adopted;
+    // step trace of this rank, also timing its collectives
+    private Trace trace;
+    // checkpoint file of this rank, null without checkpoints, and its background writer
+    private File checkpointFile;
+    private int checkpointSteps;
+    private Checkpointer checkpointer;
 
     /**
-     * @param args [0] temperature [1] cities.txt
+     * @param args [3] temperature [4] cities.txt or a TSPLIB .tsp file, then key=value options: move=swap|2opt, neighbours=k,
+     *             seed=master seed of the ranks' random streams, initial=random|hilbert|nearest|greedy tour,
+     *             mode=sync|islands|tempering, sync=temperature steps between best tour exchanges,
+     *             migrate=temperature steps between migrations in island mode,
+     *             tmin=coldest temperature, exchange=steps between replica exchanges and
+     *             steps=total steps in tempering mode, cooling=geometric|lundy-mees|acceptance,
+     *             stagnation=steps without a new best before reheating or stopping, reheats, reheat,
+     *             trace=per rank step trace file, .csv for text, otherwise binary,
+     *             checkpoint=per rank checkpoint file, checkpoint-steps=steps between checkpoints,
+     *             resume=true to continue every rank from its checkpoint
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         INITIAL_TEMP = Double.parseDouble(args[3]);
         File file = new File(args[4]);
+        Options options = Options.parse(args, 5);
         MPI.Init(args);
         SAParallel sa = new SAParallel();
-        sa.run(file);
+        sa.run(file, options);
         MPI.Finalize();
     }
 
-    private List<Integer[]> readCities(File file) {
-        // Create a list of cities and read cities from file
-        List<Integer[]> cities = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new FileInputStream(file))) {
-            while (scanner.hasNext()) {
-                String line = scanner.next();
-                if (!line.isBlank()) {
-                    String[] lineArgs = line.split("=");
-                    String[] positions = lineArgs[1].split(",");
-                    cities.add(new Integer[]{Integer.parseInt(positions[0]), Integer.parseInt(positions[1])});
+    public void run(File file, Options options) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int rank = MPI.COMM_WORLD.Rank();
+        // every rank draws from its own stream of the master seed
+        Rng rng = Rng.stream(options.getLong("seed", MASTER_SEED), rank);
+        distances = DistanceStore.create(CityLoader.load(file));
+        System.out.println("Read " + distances.size() + " cities from:" + file.getPath());
+        int neighbours = options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS);
+        Annealer annealer = new Annealer(distances, Moves.create(options.get("move", Moves.SWAP), distances, neighbours), rng);
+        // a constructed initial tour starts at a matching lower temperature
+        String initial = options.get("initial", Tours.RANDOM);
+        annealer.reset(Tours.create(initial, distances, neighbours, rng));
+        CoolingSchedule cooling = CoolingSchedules.create(options, Tours.temperature(initial, INITIAL_TEMP), COOLING_RATE);
+        int[] bestSolution = new int[distances.size()];
+        String mode = options.get("mode", "sync");
+        trace = Trace.open(options.get("trace", null), rank);
+        String checkpoint = options.get("checkpoint", null);
+        checkpointFile = checkpoint == null ? null : Checkpoint.file(checkpoint, rank);
+        checkpointSteps = Math.max(1, options.getInt("checkpoint-steps", CHECKPOINT_INTERVAL));
+        checkpointer = new Checkpointer();
+        Checkpoint saved = null;
+        if (checkpointFile != null && options.getBoolean("resume", false)) {
+            saved = resume(rank, !"islands".equals(mode));
+        }
+        double bestCost;
+        if ("islands".equals(mode)) {
+            bestCost = runIslands(annealer, cooling, options, rank, bestSolution, saved);
+        } else if ("tempering".equals(mode)) {
+            bestCost = runTempering(annealer, cooling, options, rank, bestSolution, saved);
+        } else {
+            bestCost = runSync(annealer, cooling, options, rank, bestSolution, saved);
+        }
+        checkpointer.close();
+        trace.close();
+        System.out.println(">>> Rank[" + rank + "] " + trace.summary());
+        long[] counters = {annealer.steps(), annealer.proposed(), annealer.accepted(), annealer.improving()};
+        long[] totals = new long[counters.length];
+        MPI.COMM_WORLD.Reduce(counters, 0, totals, 0, counters.length, MPI.LONG, MPI.SUM, 0);
+        // Print the best solution and cost from process 0
+        if (rank == 0) {
+            // every rank's annealer counts its own temperature steps, so the baseline is per rank
+            long fixed = MPI.COMM_WORLD.Size() * CoolingSchedules.fixedSteps(cooling.initialTemperature(), COOLING_RATE);
+            System.out.println(">>> Steps run: " + totals[0] + " of " + fixed + " fixed, moves saved: "
+                    + (fixed - totals[0]) * NEIGHBORS);
+            System.out.println(">>> Moves proposed=" + totals[1] + " accepted=" + totals[2] + " improving=" + totals[3]
+                    + " moves/s=" + totals[1] * 1000 / Math.max(1, System.currentTimeMillis() - startTime));
+            System.out.println(">>> Best cost: " + bestCost);
+            System.out.println(">>> Best solution: " + Arrays.toString(bestSolution));
+            System.out.println(">>> Time: " + (System.currentTimeMillis() - startTime));
+        }
+    }
+
+    /**
+     * All ranks anneal in lockstep and continue from the global best after every exchange.
+     * The schedule is only fed at exchanges, with the mean acceptance rate over all ranks and
+     * the global best, so every rank takes the same temperatures and stops at the same step.
+     * <p>
+     * Checkpoints are taken right after an exchange, where every rank's best tour is the
+     * global best; they save the step and the global best cost.
+     *
+     * @param saved checkpoint to resume from, or null
+     * @return global best cost, with its tour copied into bestSolution on every rank
+     */
+    private double runSync(Annealer annealer, CoolingSchedule cooling, Options options, int rank, int[] bestSolution,
+                           Checkpoint saved) {
+        int sync = Math.max(1, options.getInt("sync", 1));
+        // identical on every rank, only ever updated from the result of a collective
+        double bestCost = Double.POSITIVE_INFINITY;
+        int[] tourBuffer = new int[distances.size()];
+        // (cost, rank) pairs for the MINLOC reduction
+        double[] localBest = new double[2];
+        double[] globalBest = new double[2];
+        double[] acceptance = new double[1];
+        double[] totalAcceptance = new double[1];
+        double temp = cooling.initialTemperature();
+        int step = 0;
+        if (saved != null) {
+            annealer.restore(saved, cooling);
+            temp = saved.temperature;
+            step = (int) saved.extra[0];
+            bestCost = Double.longBitsToDouble(saved.extra[1]);
+            if (bestCost < Double.POSITIVE_INFINITY) {
+                annealer.copyBestTour(bestSolution);
+            }
+        }
+        int checkpointed = step;
+        double logTmp = temp;
+        while (!cooling.isFrozen(temp)) {
+            annealer.step(temp, NEIGHBORS);
+            trace.step(temp, annealer);
+            // Update the temperature
+            temp = cooling.next(temp);
+            if (temp < logTmp * 0.8) {
+                logTmp = temp;
+                System.out.println(">>> Rank[" + rank + "] tmp=" + temp);
+            }
+            if (++step % sync != 0 && !cooling.isFrozen(temp)) {
+                continue;
+            }
+            // best cost and the rank holding it, in one collective
+            localBest[0] = annealer.bestCost();
+            localBest[1] = rank;
+            long start = System.nanoTime();
+            MPI.COMM_WORLD.Allreduce(localBest, 0, globalBest, 0, 1, MPI.DOUBLE2, MPI.MINLOC);
+            acceptance[0] = annealer.acceptanceRate();
+            MPI.COMM_WORLD.Allreduce(acceptance, 0, totalAcceptance, 0, 1, MPI.DOUBLE, MPI.SUM);
+            trace.communication("Allreduce", start);
+            cooling.observe(totalAcceptance[0] / MPI.COMM_WORLD.Size(), Math.min(bestCost, globalBest[0]));
+            // otherwise nobody improved on the global best, so no tour needs to travel
+            if (globalBest[0] < bestCost) {
+                int bestRoot = (int) globalBest[1];
+                // every rank continues from the best solution of bestRoot
+                if (rank == bestRoot) {
+                    annealer.copyBestTour(tourBuffer);
+                }
+                start = System.nanoTime();
+                MPI.COMM_WORLD.Bcast(tourBuffer, 0, tourBuffer.length, MPI.INT, bestRoot);
+                trace.communication("Bcast", start);
+                annealer.reset(tourBuffer);
+                bestCost = globalBest[0];
+                System.arraycopy(tourBuffer, 0, bestSolution, 0, tourBuffer.length);
+                if (rank == 0) {
+                    System.out.println(">>> New best solution cost=" + bestCost + "\t tmp=" + temp);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (step - checkpointed >= checkpointSteps) {
+                checkpointed = step;
+                checkpoint(annealer, rank, temp, cooling, step, Double.doubleToLongBits(bestCost));
+            }
         }
-        System.out.println("Read " + cities.size() + " cities from:" + file.getPath());
-        return cities;
+        return bestCost;
     }
 
-    public void run(File file) {
-        long startTime = System.currentTimeMillis();
-        int rank = MPI.COMM_WORLD.Rank();
+    /**
+     * Island model: every rank runs its own chain and posts its best tour to the next rank of
+     * a ring every few steps with Isend, while an Irecv from the previous rank stays posted.
+     * An incoming tour replaces the chain only if it beats the chain's best. Nothing inside
+     * the annealing loop blocks: a migration is skipped while the previous send is in flight.
+     * <p>
+     * A message is the tour followed by the two halves of its cost bits. At the end every
+     * rank sends a NaN cost as a terminal marker and drains its receive up to the marker from
+     * its own left neighbour, then the best tour is shared with one MINLOC reduction.
+     * <p>
+     * Every rank checkpoints its own chain. Which migrations arrive when depends on timing,
+     * so a resumed run continues every chain exactly but migrates like a new run; tours in
+     * flight at the time of the checkpoint are lost.
+     *
+     * @param saved checkpoint to resume from, or null
+     * @return global best cost, with its tour copied into bestSolution on every rank
+     */
+    private double runIslands(Annealer annealer, CoolingSchedule cooling, Options options, int rank, int[] bestSolution,
+                              Checkpoint saved) {
+        int numProcesses = MPI.COMM_WORLD.Size();
+        int left = (rank + numProcesses - 1) % numProcesses;
+        int right = (rank + 1) % numProcesses;
+        int migrate = Math.max(1, options.getInt("migrate", MIGRATION_INTERVAL));
+        int[] sendBuffer = new int[distances.size() + 2];
+        int[] recvBuffer = new int[distances.size() + 2];
+        Request sending = null;
+        Request receiving = MPI.COMM_WORLD.Irecv(recvBuffer, 0, recvBuffer.length, MPI.INT, left, MIGRATION_TAG);
+        boolean leftDone = false;
+        int sent = 0;
+        double temp = cooling.initialTemperature();
+        int step = 0;
+        if (saved != null) {
+            annealer.restore(saved, cooling);
+            temp = saved.temperature;
+            step = (int) saved.extra[0];
+            sent = (int) saved.extra[1];
+            received = (int) saved.extra[2];
+            adopted = (int) saved.extra[3];
+        }
+        double logTmp = temp;
+        while (!cooling.isFrozen(temp)) {
+            if (step > 0 && step % checkpointSteps == 0) {
+                checkpoint(annealer, rank, temp, cooling, step, sent, received, adopted);
+            }
+            annealer.step(temp, NEIGHBORS);
+            trace.step(temp, annealer);
+            // no collectives in this loop, so every rank may follow its own schedule
+            cooling.observe(annealer.acceptanceRate(), annealer.bestCost());
+            // Update the temperature
+            temp = cooling.next(temp);
+            if (temp < logTmp * 0.8) {
+                logTmp = temp;
+                System.out.println(">>> Rank[" + rank + "] tmp=" + temp + " cost=" + annealer.bestCost());
+            }
+            if (!leftDone && receiving.Test() != null) {
+                leftDone = !receive(annealer, recvBuffer);
+                if (!leftDone) {
+                    receiving = MPI.COMM_WORLD.Irecv(recvBuffer, 0, recvBuffer.length, MPI.INT, left, MIGRATION_TAG);
+                }
+            }
+            if (++step % migrate == 0 && (sending == null || sending.Test() != null)) {
+                long start = System.nanoTime();
+                annealer.copyBestTour(sendBuffer);
+                encodeCost(sendBuffer, annealer.bestCost());
+                sending = MPI.COMM_WORLD.Isend(sendBuffer, 0, sendBuffer.length, MPI.INT, right, MIGRATION_TAG);
+                trace.communication("Isend", start);
+                sent++;
+            }
+        }
+        // messages between two ranks do not overtake, so the marker arrives after every tour
+        if (sending != null) {
+            sending.Wait();
+        }
+        encodeCost(sendBuffer, Double.NaN);
+        sending = MPI.COMM_WORLD.Isend(sendBuffer, 0, sendBuffer.length, MPI.INT, right, MIGRATION_TAG);
+        while (!leftDone) {
+            receiving.Wait();
+            leftDone = !receive(annealer, recvBuffer);
+            if (!leftDone) {
+                receiving = MPI.COMM_WORLD.Irecv(recvBuffer, 0, recvBuffer.length, MPI.INT, left, MIGRATION_TAG);
+            }
+        }
+        sending.Wait();
+        System.out.println(">>> Rank[" + rank + "] sent " + sent + " tours, adopted " + adopted + " of " + received);
+        return shareBest(annealer, rank, bestSolution);
+    }
+
+    /**
+     * Parallel tempering: every rank anneals at a fixed temperature of a geometric ladder from
+     * the schedule's starting temperature down to tmin. Every few steps the ranks holding
+     * neighbouring rungs may swap temperatures, accepted with probability
+     * min(1, exp((1/Ti - 1/Tj)(Ei - Ej))). Swapping temperatures instead of tours keeps the
+     * exchange to one Allgather of (cost, rung, best) triples; every rank then takes the same
+     * decisions from a random stream shared by all ranks. Even and odd rung pairs are tried alternately.
+     * <p>
+     * By default the run takes as many steps as the geometric schedule would, so it uses the
+     * same core hours as the other modes.
+     *
+     * @return global best cost, with its tour copied into bestSolution on every rank
+     */
+    private double runTempering(Annealer annealer, CoolingSchedule cooling, Options options, int rank,
+                                int[] bestSolution, Checkpoint saved) {
         int numProcesses = MPI.COMM_WORLD.Size();
-        //random based on rank as seed
-        Random rand = new Random(rank);
-        cities = readCities(file);
-        double temp = INITIAL_TEMP, logTmp = INITIAL_TEMP;
-        List<Integer> currentSolution = generateInitialSolution(rand);
-        List<Integer> bestSolution = new ArrayList<>(currentSolution);
-        double bestCost = calculateCost(currentSolution);
-        while (temp > 1) {
-            for (int i = 0; i < NEIGHBORS; i++) {
-                List<Integer> newSolution = generateNeighborSolution(currentSolution, rand);
-                // Calculate the costs for current and new solutions
-                double currentCost = calculateCost(currentSolution);
-                double newCost = calculateCost(newSolution);
-                // Perform local updates on each process
-                if (acceptanceProbability(currentCost, newCost, temp) > Math.random()) {
-                    currentSolution = new ArrayList<>(newSolution);
+        double[] ladder = ladder(cooling.initialTemperature(), options.getDouble("tmin", 1), numProcesses);
+        int exchange = Math.max(1, options.getInt("exchange", EXCHANGE_INTERVAL));
+        int steps = options.getInt("steps", (int) CoolingSchedules.fixedSteps(cooling.initialTemperature(), COOLING_RATE));
+        // one stream past the ranks' ones, identical on every rank
+        Rng exchangeRand = Rng.stream(options.getLong("seed", MASTER_SEED), numProcesses);
+        // (current cost, rung, best cost) of this rank and of all ranks
+        double[] local = new double[3];
+        double[] all = new double[3 * numProcesses];
+        // rank holding every rung, and exchange statistics per pair of rungs
+        int[] rankAt = new int[numProcesses];
+        int[] attempts = new int[Math.max(1, numProcesses - 1)];
+        int[] accepts = new int[attempts.length];
+        int rung = rank;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int first = 1, round = 0;
+        if (saved != null) {
+            annealer.restore(saved, cooling);
+            first = (int) saved.extra[0];
+            round = (int) saved.extra[1];
+            rung = (int) saved.extra[2];
+            bestCost = Double.longBitsToDouble(saved.extra[3]);
+            for (int low = 0; low < attempts.length; low++) {
+                attempts[low] = (int) saved.extra[4 + low];
+                accepts[low] = (int) saved.extra[4 + attempts.length + low];
+                // the shared generator drew once per attempt
+                for (int k = 0; k < attempts[low]; k++) {
+                    exchangeRand.nextDouble();
                 }
-                // Determine the local best solution and cost
-                if (newCost < bestCost) {
-                    currentSolution = newSolution;
-                    bestCost = newCost;
+            }
+        }
+        int checkpointed = first - 1;
+        for (int step = first; step <= steps; step++) {
+            annealer.step(ladder[rung], NEIGHBORS);
+            trace.step(ladder[rung], annealer);
+            if (step % exchange != 0) {
+                continue;
+            }
+            local[0] = annealer.cost();
+            local[1] = rung;
+            local[2] = annealer.bestCost();
+            long start = System.nanoTime();
+            MPI.COMM_WORLD.Allgather(local, 0, 3, MPI.DOUBLE, all, 0, 3, MPI.DOUBLE);
+            trace.communication("Allgather", start);
+            double roundBest = Double.POSITIVE_INFINITY;
+            for (int r = 0; r < numProcesses; r++) {
+                rankAt[(int) all[3 * r + 1]] = r;
+                roundBest = Math.min(roundBest, all[3 * r + 2]);
+            }
+            if (roundBest < bestCost) {
+                bestCost = roundBest;
+                if (rank == 0) {
+                    System.out.println(">>> New best solution cost=" + bestCost + "\t step=" + step);
                 }
             }
-            // Synchronize the best solution and cost across all processes
-            double[] globalBestCostBuff = new double[]{bestCost};
-            int bestRoot = 0;
-            double globalBestCost = bestCost;
-//            System.out.println(">>> rank[" + rank + "] best cost =" + bestCost);
-            // get best cost & best root
-            if (rank == 0) {
-                for (int i = 1; i < numProcesses; i++) {
-                    MPI.COMM_WORLD.Recv(globalBestCostBuff, 0, 1, MPI.DOUBLE, i, 0);
-                    if (globalBestCostBuff[0] < globalBestCost) {
-                        bestRoot = i;
-                        globalBestCost = globalBestCostBuff[0];
+            for (int low = round++ % 2; low + 1 < numProcesses; low += 2) {
+                int i = rankAt[low];
+                int j = rankAt[low + 1];
+                double exponent = (1 / ladder[low] - 1 / ladder[low + 1]) * (all[3 * i] - all[3 * j]);
+                // always drawn so the generator stays in step on every rank
+                double u = exchangeRand.nextDouble();
+                attempts[low]++;
+                if (exponent >= 0 || u < Math.exp(exponent)) {
+                    accepts[low]++;
+                    if (rank == i) {
+                        rung = low + 1;
+                    } else if (rank == j) {
+                        rung = low;
                     }
                 }
-                globalBestCostBuff[0] = bestRoot;
-                for (int i = 1; i < numProcesses; i++) {
-                    MPI.COMM_WORLD.Send(globalBestCostBuff, 0, 1, MPI.DOUBLE, i, 0);
+            }
+            if (step - checkpointed >= checkpointSteps) {
+                checkpointed = step;
+                long[] extra = new long[4 + 2 * attempts.length];
+                extra[0] = step + 1;
+                extra[1] = round;
+                extra[2] = rung;
+                extra[3] = Double.doubleToLongBits(bestCost);
+                for (int low = 0; low < attempts.length; low++) {
+                    extra[4 + low] = attempts[low];
+                    extra[4 + attempts.length + low] = accepts[low];
                 }
-            } else {
-                MPI.COMM_WORLD.Send(globalBestCostBuff, 0, 1, MPI.DOUBLE, 0, 0);
-                MPI.COMM_WORLD.Recv(globalBestCostBuff, 0, 1, MPI.DOUBLE, 0, 0);
-            }
-            bestRoot = (int) globalBestCostBuff[0];
-//            System.out.println("<<< rank[" + rank + "] best root =" + bestRoot);
-            // update bestSolution from bestRoot
-            int[] tempBestSolution = new int[currentSolution.size()];
-            for (int i = 0; i < currentSolution.size(); i++) {
-                tempBestSolution[i] = currentSolution.get(i);
-            }
-            MPI.COMM_WORLD.Bcast(tempBestSolution, 0, tempBestSolution.length, MPI.INT, bestRoot);
-            for (int i = 0; i < currentSolution.size(); i++) {
-                currentSolution.set(i, tempBestSolution[i]);
-            }
-            if (rank == 0 && bestCost > calculateCost(currentSolution)) {
-                bestSolution = currentSolution;
-                System.out.println(">>> New best solution cost=" + bestCost + "\t tmp=" + temp);
-            }
-//            System.out.println("<<< rank[" + rank + "] best currentSolution =" + currentSolution);
-            // Update the temperature
-            temp *= 1 - COOLING_RATE;
-            if (temp < logTmp * 0.8) {
-                logTmp = temp;
-                System.out.println(">>> Rank[" + rank + "] tmp=" + temp);
+                checkpoint(annealer, rank, ladder[rung], cooling, extra);
             }
         }
-        // Print the best solution and cost from process 0
         if (rank == 0) {
-            System.out.println(">>> Best cost: " + bestCost);
-            System.out.println(">>> Best solution: " + bestSolution);
-            System.out.println(">>> Time: " + (System.currentTimeMillis() - startTime));
+            for (int low = 0; low + 1 < numProcesses; low++) {
+                System.out.println(">>> Exchange T=" + ladder[low] + " <-> T=" + ladder[low + 1] + ": accepted "
+                        + accepts[low] + " of " + attempts[low]
+                        + (attempts[low] == 0 ? "" : " (" + 100 * accepts[low] / attempts[low] + "%)"));
+            }
+        }
+        return shareBest(annealer, rank, bestSolution);
+    }
+
+    /**
+     * Hand a checkpoint of this rank to the background writer, if checkpoints are on.
+     *
+     * @param temperature temperature of the rank's next step
+     */
+    private void checkpoint(Annealer annealer, int rank, double temperature, CoolingSchedule cooling, long... extra) {
+        if (checkpointFile != null) {
+            checkpointer.submit(checkpointFile, annealer.checkpoint(rank, temperature, cooling, extra));
         }
     }
 
-    private List<Integer> generateInitialSolution(Random rand) {
-        List<Integer> initialSolution = new ArrayList<>();
-        for (int i = 0; i < cities.size(); i++) {
-            initialSolution.add(i);
+    /**
+     * Read this rank's checkpoint. Ranks in lockstep must resume at the same step: a
+     * crash can leave some ranks' latest checkpoint unwritten, and then the run cannot resume.
+     *
+     * @param lockstep true when the ranks exchange in lockstep
+     */
+    private Checkpoint resume(int rank, boolean lockstep) throws IOException {
+        Checkpoint saved = Checkpoint.read(checkpointFile);
+        if (lockstep) {
+            long[] step = {saved.extra[0]};
+            long[] first = new long[1];
+            long[] last = new long[1];
+            MPI.COMM_WORLD.Allreduce(step, 0, first, 0, 1, MPI.LONG, MPI.MIN);
+            MPI.COMM_WORLD.Allreduce(step, 0, last, 0, 1, MPI.LONG, MPI.MAX);
+            if (first[0] != last[0]) {
+                throw new IOException("Rank checkpoints are from steps " + first[0] + " to " + last[0]
+                        + ", lockstep modes need all ranks at the same step");
+            }
         }
-        Collections.shuffle(initialSolution, rand);
-        return initialSolution;
+        System.out.println(">>> Rank[" + rank + "] resumed at step " + saved.extra[0] + " from " + checkpointFile);
+        return saved;
     }
 
-    private List<Integer> generateNeighborSolution(List<Integer> currentSolution, Random rand) {
-        List<Integer> newSolution = new ArrayList<>(currentSolution);
-        int swapIndex1 = (int) (newSolution.size() * rand.nextDouble());
-        int swapIndex2 = (int) (newSolution.size() * rand.nextDouble());
-        Collections.swap(newSolution, swapIndex1, swapIndex2);
-        return newSolution;
+    /**
+     * @return geometric temperature ladder from hottest to coldest
+     */
+    private static double[] ladder(double hottest, double coldest, int rungs) {
+        double[] ladder = new double[rungs];
+        for (int k = 0; k < rungs; k++) {
+            ladder[k] = rungs == 1 ? hottest : hottest * Math.pow(coldest / hottest, (double) k / (rungs - 1));
+        }
+        return ladder;
     }
 
-    private double calculateCost(List<Integer> solution) {
-        double sum = 0;
-        for (int i = 1; i < solution.size(); i++) {
-            Integer[] city1 = cities.get(solution.get(i - 1));
-            Integer[] city2 = cities.get(solution.get(i));
-            sum += Math.sqrt(Math.pow(city1[0] - city2[0], 2) + Math.pow(city1[1] - city2[1], 2));
+    /**
+     * Take a migrated tour if it beats the chain's best.
+     *
+     * @return false when the message is the terminal marker
+     */
+    private boolean receive(Annealer annealer, int[] buffer) {
+        double cost = decodeCost(buffer);
+        if (Double.isNaN(cost)) {
+            return false;
+        }
+        received++;
+        if (cost < annealer.bestCost()) {
+            // reset copies the leading tour and ignores the cost words
+            annealer.reset(buffer);
+            adopted++;
         }
-        return sum;
+        return true;
     }
 
-    private double acceptanceProbability(double currentCost, double newCost, double temp) {
-        if (newCost < currentCost) {
-            return 1.0;
+    /**
+     * Broadcast the best tour of all ranks, chosen with one MINLOC reduction.
+     *
+     * @return its cost
+     */
+    private double shareBest(Annealer annealer, int rank, int[] bestSolution) {
+        double[] localBest = {annealer.bestCost(), rank};
+        double[] globalBest = new double[2];
+        long start = System.nanoTime();
+        MPI.COMM_WORLD.Allreduce(localBest, 0, globalBest, 0, 1, MPI.DOUBLE2, MPI.MINLOC);
+        int bestRoot = (int) globalBest[1];
+        if (rank == bestRoot) {
+            annealer.copyBestTour(bestSolution);
         }
-        return Math.exp((currentCost - newCost) / temp);
+        MPI.COMM_WORLD.Bcast(bestSolution, 0, bestSolution.length, MPI.INT, bestRoot);
+        trace.communication("Bcast", start);
+        return globalBest[0];
+    }
+
+    /**
+     * Store a cost in the last two ints of a migration buffer.
+     */
+    private static void encodeCost(int[] buffer, double cost) {
+        long bits = Double.doubleToLongBits(cost);
+        buffer[buffer.length - 2] = (int) (bits >>> 32);
+        buffer[buffer.length - 1] = (int) bits;
+    }
+
+    private static double decodeCost(int[] buffer) {
+        long bits = ((long) buffer[buffer.length - 2] << 32) | (buffer[buffer.length - 1] & 0xFFFFFFFFL);
+        return Double.longBitsToDouble(bits);
     }
-}
\ No newline at end of file
+}
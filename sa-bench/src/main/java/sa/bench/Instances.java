@@ -0,0 +1,69 @@
+package sa.bench;
+
+import sa.core.CityLoader;
+import sa.core.CityTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Benchmark instances: the bundled cities.txt or uniformly random cities.
+ */
+final class Instances {
+    static final String BUNDLED = "cities.txt";
+    // side of the square the generated cities are drawn from
+    private static final double SIDE = 1_000_000;
+
+    private Instances() {
+    }
+
+    /**
+     * @param instance {@link #BUNDLED} or the number of cities to generate
+     */
+    static CityTable load(String instance) throws IOException {
+        if (BUNDLED.equals(instance)) {
+            return readBundled();
+        }
+        return generate(Integer.parseInt(instance), 534);
+    }
+
+    static CityTable generate(int n, long seed) {
+        Random rand = new Random(seed);
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = rand.nextDouble() * SIDE;
+            y[i] = rand.nextDouble() * SIDE;
+        }
+        return new CityTable(x, y);
+    }
+
+    private static CityTable readBundled() throws IOException {
+        try (InputStream in = Instances.class.getResourceAsStream("/" + BUNDLED)) {
+            if (in == null) {
+                throw new IOException(BUNDLED + " is not on the classpath");
+            }
+            return CityLoader.parse(ByteBuffer.wrap(in.readAllBytes()), false);
+        }
+    }
+
+    /**
+     * @return the identity tour shuffled with a fixed seed
+     */
+    static int[] randomTour(int n) {
+        Random rand = new Random(534);
+        int[] tour = new int[n];
+        for (int i = 0; i < n; i++) {
+            tour[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int temp = tour[i];
+            tour[i] = tour[j];
+            tour[j] = temp;
+        }
+        return tour;
+    }
+}
@@ -0,0 +1,71 @@
+package sa.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tour copies around a broadcast: the boxed List round trip SAParallel used to do per
+ * temperature step against the primitive copy into a reused buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshalBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int cities;
+
+    private int[] tour;
+    private int[] buffer;
+    private List<Integer> solution;
+
+    @Setup
+    public void setup() {
+        tour = Instances.randomTour(cities);
+        buffer = new int[cities];
+        solution = new ArrayList<>(cities);
+        for (int city : tour) {
+            solution.add(city);
+        }
+    }
+
+    /**
+     * List to a fresh int[] before Bcast and back into the List afterwards.
+     */
+    @Benchmark
+    public List<Integer> boxedRoundTrip() {
+        int[] tempBestSolution = new int[solution.size()];
+        for (int i = 0; i < solution.size(); i++) {
+            tempBestSolution[i] = solution.get(i);
+        }
+        for (int i = 0; i < solution.size(); i++) {
+            solution.set(i, tempBestSolution[i]);
+        }
+        return solution;
+    }
+
+    /**
+     * Best tour copied into the reused broadcast buffer.
+     */
+    @Benchmark
+    public int[] primitiveCopy() {
+        System.arraycopy(tour, 0, buffer, 0, tour.length);
+        return buffer;
+    }
+}
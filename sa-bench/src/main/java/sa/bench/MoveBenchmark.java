@@ -0,0 +1,106 @@
+package sa.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sa.core.Annealer;
+import sa.core.DistanceStore;
+import sa.core.Move;
+import sa.core.Moves;
+import sa.core.Rng;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-move kernels of the annealing loop, reported in ns/move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+    // moves per engine step, as in every backend
+    private static final int MOVES = 100;
+
+    @Param({Instances.BUNDLED, "1000", "10000", "100000"})
+    public String instance;
+
+    @Param({Moves.SWAP, Moves.TWO_OPT})
+    public String move;
+
+    @Param({"10"})
+    public double temperature;
+
+    // xoshiro streams as in the backends, or java.util.Random for comparison
+    @Param({"xoshiro", "random"})
+    public String generator;
+
+    private DistanceStore distances;
+    private Move neighbourMove;
+    private Annealer annealer;
+    private Rng rng;
+    private int[] tour;
+    private double uphillDelta;
+
+    @Setup
+    public void setup() throws IOException {
+        distances = DistanceStore.create(Instances.load(instance));
+        tour = Instances.randomTour(distances.size());
+        rng = generator("xoshiro".equals(generator), 0);
+        neighbourMove = Moves.create(move, distances);
+        neighbourMove.reset(tour);
+        annealer = new Annealer(distances, Moves.create(move, distances), generator("xoshiro".equals(generator), 1));
+        annealer.reset(tour);
+        uphillDelta = temperature;
+    }
+
+    private static Rng generator(boolean xoshiro, int stream) {
+        return xoshiro ? Rng.stream(534, stream) : Rng.of(new Random(534 + stream));
+    }
+
+    /**
+     * Neighbour generation with its incremental cost change.
+     */
+    @Benchmark
+    public double propose() {
+        return neighbourMove.propose(rng);
+    }
+
+    /**
+     * Full tour cost, the per-move price the backends paid before incremental evaluation.
+     */
+    @Benchmark
+    public double fullCost() {
+        return distances.tourCost(tour);
+    }
+
+    /**
+     * Metropolis acceptance test on an uphill move, the branch that draws a random number.
+     */
+    @Benchmark
+    public boolean accept() {
+        return Annealer.accept(uphillDelta, temperature, rng);
+    }
+
+    /**
+     * A whole engine step: propose, accept and apply, normalised per move.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MOVES)
+    public double step() {
+        return annealer.step(temperature, MOVES);
+    }
+}
@@ -0,0 +1,63 @@
+package sa.core;
+
+/**
+ * Geometric cooling whose rate follows the acceptance rate of the last step.
+ * <p>
+ * While almost every move is accepted the chain is a random walk and learns nothing, so it
+ * cools at four times the base rate. Once almost nothing is accepted the tour is close to a
+ * local minimum and it cools at twice the base rate. In between, where the tour takes shape,
+ * it cools at the base rate.
+ */
+public final class AcceptanceRateCooling implements CoolingSchedule {
+    private static final double FROZEN_TEMPERATURE = 1;
+    // acceptance rates bounding the band cooled at the base rate
+    private static final double HOT_ACCEPTANCE = 0.5;
+    private static final double COLD_ACCEPTANCE = 0.02;
+
+    private final double initialTemperature;
+    private final double rate;
+    private double acceptance = (HOT_ACCEPTANCE + COLD_ACCEPTANCE) / 2;
+
+    public AcceptanceRateCooling(double initialTemperature, double rate) {
+        if (rate <= 0 || 4 * rate >= 1) {
+            throw new IllegalArgumentException("Cooling rate must be in (0, 0.25): " + rate);
+        }
+        this.initialTemperature = initialTemperature;
+        this.rate = rate;
+    }
+
+    @Override
+    public double initialTemperature() {
+        return initialTemperature;
+    }
+
+    @Override
+    public void observe(double acceptance, double bestCost) {
+        this.acceptance = acceptance;
+    }
+
+    @Override
+    public double[] state() {
+        return new double[]{acceptance};
+    }
+
+    @Override
+    public void restore(double[] state) {
+        acceptance = state[0];
+    }
+
+    @Override
+    public double next(double temperature) {
+        if (acceptance > HOT_ACCEPTANCE) {
+            return temperature * (1 - 4 * rate);
+        } else if (acceptance < COLD_ACCEPTANCE) {
+            return temperature * (1 - 2 * rate);
+        }
+        return temperature * (1 - rate);
+    }
+
+    @Override
+    public boolean isFrozen(double temperature) {
+        return temperature <= FROZEN_TEMPERATURE;
+    }
+}
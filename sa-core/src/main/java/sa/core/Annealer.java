@@ -0,0 +1,240 @@
+package sa.core;
+
+/**
+ * Simulated annealing on a primitive tour, shared by every backend.
+ * <p>
+ * The current tour is changed in place by the {@link Move}, whose cost change is evaluated
+ * incrementally; nothing is allocated per move. The running cost is checked against a full
+ * recompute every {@link #VERIFY_INTERVAL} accepted moves so floating-point drift cannot
+ * accumulate. The best tour is sampled at the end of every step.
+ */
+public final class Annealer {
+    static final int VERIFY_INTERVAL = 10_000;
+    private static final double DRIFT_TOLERANCE = 1e-6;
+
+    private final DistanceStore distances;
+    private final Move move;
+    private final Rng rng;
+    private final int[] tour;
+    private final int[] bestTour;
+    private double cost;
+    private double bestCost;
+    private int appliedSinceVerify;
+    // acceptance rate of the last step and steps run since construction
+    private double acceptanceRate;
+    private long steps;
+    // moves proposed, accepted and accepted with a lower cost since construction
+    private long proposed;
+    private long accepted;
+    private long improving;
+
+    public Annealer(DistanceStore distances, Move move, Rng rng) {
+        this.distances = distances;
+        this.move = move;
+        this.rng = rng;
+        this.tour = new int[distances.size()];
+        this.bestTour = new int[distances.size()];
+    }
+
+    /**
+     * Restart from a copy of the given tour, which also becomes the best tour.
+     */
+    public void reset(int[] start) {
+        System.arraycopy(start, 0, tour, 0, tour.length);
+        System.arraycopy(start, 0, bestTour, 0, tour.length);
+        cost = distances.tourCost(tour);
+        bestCost = cost;
+        appliedSinceVerify = 0;
+        move.reset(tour);
+    }
+
+    /**
+     * Run a whole schedule from the current tour.
+     *
+     * @return best cost found
+     */
+    public double run(CoolingSchedule schedule, int movesPerStep) {
+        return run(schedule, movesPerStep, null);
+    }
+
+    /**
+     * Run a whole schedule from the current tour, recording every step.
+     *
+     * @param trace receives every step, or null
+     * @return best cost found
+     */
+    public double run(CoolingSchedule schedule, int movesPerStep, Trace trace) {
+        double temperature = schedule.initialTemperature();
+        while (!schedule.isFrozen(temperature)) {
+            step(temperature, movesPerStep);
+            if (trace != null) {
+                trace.step(temperature, this);
+            }
+            schedule.observe(acceptanceRate, bestCost);
+            temperature = schedule.next(temperature);
+        }
+        verify();
+        return bestCost;
+    }
+
+    /**
+     * Propose the given number of moves at one temperature.
+     *
+     * @return current cost after the step
+     */
+    public double step(double temperature, int moves) {
+        int taken = 0;
+        int improved = 0;
+        for (int i = 0; i < moves; i++) {
+            double delta = move.propose(rng);
+            if (accept(delta, temperature, rng)) {
+                taken++;
+                if (delta < 0) {
+                    improved++;
+                }
+                move.apply();
+                cost += delta;
+                if (++appliedSinceVerify >= VERIFY_INTERVAL) {
+                    verify();
+                }
+            }
+        }
+        if (cost < bestCost) {
+            bestCost = cost;
+            System.arraycopy(tour, 0, bestTour, 0, tour.length);
+        }
+        acceptanceRate = moves == 0 ? 0 : (double) taken / moves;
+        steps++;
+        proposed += moves;
+        accepted += taken;
+        improving += improved;
+        return cost;
+    }
+
+    /**
+     * Metropolis test: always take an improvement, take a worse move with probability exp(-delta / temperature).
+     */
+    public static boolean accept(double delta, double temperature, Rng rng) {
+        if (delta < 0) {
+            return true;
+        }
+        return rng.nextDouble() < Math.exp(-delta / temperature);
+    }
+
+    /**
+     * Re-synchronise the running cost with a full recompute.
+     */
+    public void verify() {
+        appliedSinceVerify = 0;
+        double exact = distances.tourCost(tour);
+        if (Math.abs(exact - cost) > DRIFT_TOLERANCE * Math.max(1, exact)) {
+            throw new IllegalStateException("Incremental cost " + cost + " drifted from tour cost " + exact);
+        }
+        cost = exact;
+    }
+
+    /**
+     * Snapshot the chain between two steps. The tours are copied, so the checkpoint can be
+     * written while the chain runs on.
+     *
+     * @param temperature temperature of the next step
+     * @param schedule    schedule driving the chain, whose state is saved too, or null when
+     *                    the caller keeps the temperature
+     * @param extra       backend loop state returned as {@link Checkpoint#extra}
+     */
+    public Checkpoint checkpoint(int chain, double temperature, CoolingSchedule schedule, long... extra) {
+        return new Checkpoint(chain, temperature, cost, bestCost, appliedSinceVerify, steps, proposed, accepted,
+                improving, tour.clone(), bestTour.clone(), rng.state(),
+                schedule == null ? new double[0] : schedule.state(), extra);
+    }
+
+    /**
+     * Continue exactly where a checkpoint of an annealer with the same distances, move and
+     * kind of generator was taken, restoring the schedule's state too.
+     *
+     * @param schedule the chain's schedule, or null if the checkpoint was taken without one
+     */
+    public void restore(Checkpoint checkpoint, CoolingSchedule schedule) {
+        if (checkpoint.tour.length != tour.length) {
+            throw new IllegalArgumentException("Checkpoint has " + checkpoint.tour.length + " cities, not " + tour.length);
+        }
+        System.arraycopy(checkpoint.tour, 0, tour, 0, tour.length);
+        System.arraycopy(checkpoint.bestTour, 0, bestTour, 0, tour.length);
+        cost = checkpoint.cost;
+        bestCost = checkpoint.bestCost;
+        appliedSinceVerify = checkpoint.appliedSinceVerify;
+        steps = checkpoint.steps;
+        proposed = checkpoint.proposed;
+        accepted = checkpoint.accepted;
+        improving = checkpoint.improving;
+        move.reset(tour);
+        rng.restore(checkpoint.rng);
+        if (schedule != null) {
+            schedule.restore(checkpoint.schedule);
+        }
+    }
+
+    public double cost() {
+        return cost;
+    }
+
+    public double bestCost() {
+        return bestCost;
+    }
+
+    /**
+     * @return fraction of the last step's proposals that were accepted
+     */
+    public double acceptanceRate() {
+        return acceptanceRate;
+    }
+
+    /**
+     * @return temperature steps run since construction
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return moves proposed since construction
+     */
+    public long proposed() {
+        return proposed;
+    }
+
+    /**
+     * @return moves accepted since construction
+     */
+    public long accepted() {
+        return accepted;
+    }
+
+    /**
+     * @return accepted moves that lowered the cost, since construction
+     */
+    public long improving() {
+        return improving;
+    }
+
+    /**
+     * @return the current tour, owned by the annealer and changed by every accepted move
+     */
+    public int[] tour() {
+        return tour;
+    }
+
+    /**
+     * @return the best tour, owned by the annealer and overwritten by later improvements
+     */
+    public int[] bestTour() {
+        return bestTour;
+    }
+
+    /**
+     * Copy the best tour into a caller-owned buffer.
+     */
+    public void copyBestTour(int[] out) {
+        System.arraycopy(bestTour, 0, out, 0, bestTour.length);
+    }
+}
@@ -0,0 +1,182 @@
+package sa.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Everything a chain needs to continue bit for bit: its current and best tour with their
+ * costs, the temperature of its next step, the random generator and cooling schedule state,
+ * its counters, plus whatever loop state the backend adds in {@code extra}.
+ * <p>
+ * The binary format is big-endian: magic "SACK", version, chain, temperature, the two costs,
+ * the verify counter, the four move counters, both tours {@link TourCodec packed}, then the
+ * generator state, the schedule state and the extra longs, each preceded by its length.
+ * Checkpoints are immutable once built, so a {@link Checkpointer} can write them while the
+ * chain runs on. They are serializable too, so a framework can keep a chain's state between
+ * its tasks.
+ */
+public final class Checkpoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // first int of a checkpoint file, "SACK"
+    private static final int MAGIC = 0x5341434B;
+    private static final int VERSION = 1;
+
+    public final int chain;
+    // temperature of the next step
+    public final double temperature;
+    public final double cost;
+    public final double bestCost;
+    // accepted moves since the running cost was last verified
+    final int appliedSinceVerify;
+    public final long steps;
+    public final long proposed;
+    public final long accepted;
+    public final long improving;
+    public final int[] tour;
+    public final int[] bestTour;
+    final byte[] rng;
+    final double[] schedule;
+    // backend loop state, such as a step counter or a global best cost
+    public final long[] extra;
+
+    Checkpoint(int chain, double temperature, double cost, double bestCost, int appliedSinceVerify,
+               long steps, long proposed, long accepted, long improving,
+               int[] tour, int[] bestTour, byte[] rng, double[] schedule, long[] extra) {
+        this.chain = chain;
+        this.temperature = temperature;
+        this.cost = cost;
+        this.bestCost = bestCost;
+        this.appliedSinceVerify = appliedSinceVerify;
+        this.steps = steps;
+        this.proposed = proposed;
+        this.accepted = accepted;
+        this.improving = improving;
+        this.tour = tour;
+        this.bestTour = bestTour;
+        this.rng = rng;
+        this.schedule = schedule;
+        this.extra = extra;
+    }
+
+    /**
+     * Checkpoint of a driver that keeps the current and best tour of its chains but runs no
+     * annealer itself. The tours are copied.
+     *
+     * @param rng      driver generator, such as the one drawing the chains' seeds, or null
+     * @param schedule driver schedule, or null when the driver keeps no temperature of its own
+     */
+    public static Checkpoint ofDriver(double temperature, double cost, int[] tour, double bestCost, int[] bestTour,
+                                      Rng rng, CoolingSchedule schedule, long... extra) {
+        return new Checkpoint(-1, temperature, cost, bestCost, 0, 0, 0, 0, 0, tour.clone(), bestTour.clone(),
+                rng == null ? new byte[0] : rng.state(), schedule == null ? new double[0] : schedule.state(), extra);
+    }
+
+    /**
+     * Restore the generator and schedule saved by {@link #ofDriver}.
+     */
+    public void restoreDriver(Rng rng, CoolingSchedule schedule) {
+        if (rng != null) {
+            rng.restore(this.rng);
+        }
+        if (schedule != null) {
+            schedule.restore(this.schedule);
+        }
+    }
+
+    /**
+     * @return the file of a chain, see {@link Trace#open}
+     */
+    public static File file(String path, int chain) {
+        return new File(Trace.perChain(path, chain));
+    }
+
+    /**
+     * Write to a temporary file, force it to disk and rename it over the target, so a crash
+     * leaves either the previous checkpoint or this one.
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(chain);
+            out.writeDouble(temperature);
+            out.writeDouble(cost);
+            out.writeDouble(bestCost);
+            out.writeInt(appliedSinceVerify);
+            out.writeLong(steps);
+            out.writeLong(proposed);
+            out.writeLong(accepted);
+            out.writeLong(improving);
+            writeBytes(out, TourCodec.pack(tour));
+            writeBytes(out, TourCodec.pack(bestTour));
+            writeBytes(out, rng);
+            out.writeInt(schedule.length);
+            for (double value : schedule) {
+                out.writeDouble(value);
+            }
+            out.writeInt(extra.length);
+            for (long value : extra) {
+                out.writeLong(value);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Checkpoint read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a checkpoint");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has checkpoint version " + version + ", expected " + VERSION);
+            }
+            int chain = in.readInt();
+            double temperature = in.readDouble();
+            double cost = in.readDouble();
+            double bestCost = in.readDouble();
+            int appliedSinceVerify = in.readInt();
+            long steps = in.readLong();
+            long proposed = in.readLong();
+            long accepted = in.readLong();
+            long improving = in.readLong();
+            int[] tour = TourCodec.unpack(readBytes(in));
+            int[] bestTour = TourCodec.unpack(readBytes(in));
+            byte[] rng = readBytes(in);
+            double[] schedule = new double[in.readInt()];
+            for (int i = 0; i < schedule.length; i++) {
+                schedule[i] = in.readDouble();
+            }
+            long[] extra = new long[in.readInt()];
+            for (int i = 0; i < extra.length; i++) {
+                extra[i] = in.readLong();
+            }
+            return new Checkpoint(chain, temperature, cost, bestCost, appliedSinceVerify, steps, proposed, accepted,
+                    improving, tour, bestTour, rng, schedule, extra);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
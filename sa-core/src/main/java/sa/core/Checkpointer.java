@@ -0,0 +1,110 @@
+package sa.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes checkpoints on a background thread, so the annealing loop only pays for taking the
+ * snapshot. Only the latest checkpoint of every file is kept: one submitted while an older
+ * one for the same file is still waiting replaces it. A failed write is reported and the
+ * run goes on; {@link #flush} also throws it.
+ */
+public final class Checkpointer implements Closeable {
+    private final Map<File, Checkpoint> pending = new LinkedHashMap<>();
+    private final Thread writer;
+    private boolean closed;
+    // true while the writer thread writes a checkpoint it took from pending
+    private boolean writing;
+    // first failed write since the last flush
+    private IOException failure;
+
+    public Checkpointer() {
+        writer = new Thread(this::drain, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public synchronized void submit(File file, Checkpoint checkpoint) {
+        if (closed) {
+            throw new IllegalStateException("Checkpointer is closed");
+        }
+        pending.put(file, checkpoint);
+        notifyAll();
+    }
+
+    private void drain() {
+        while (true) {
+            File file;
+            Checkpoint checkpoint;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<File, Checkpoint>> first = pending.entrySet().iterator();
+                Map.Entry<File, Checkpoint> entry = first.next();
+                first.remove();
+                file = entry.getKey();
+                checkpoint = entry.getValue();
+                writing = true;
+            }
+            IOException failed = null;
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                System.out.println(">>> Could not write checkpoint " + file + ": " + e.getMessage());
+                failed = e;
+            }
+            synchronized (this) {
+                writing = false;
+                if (failure == null) {
+                    failure = failed;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until every checkpoint submitted so far is on disk, for a caller that must not
+     * refer to a checkpoint before it is durable.
+     *
+     * @throws IOException the first write that failed since the last flush
+     */
+    public synchronized void flush() throws IOException, InterruptedException {
+        while (!pending.isEmpty() || writing) {
+            wait();
+        }
+        IOException failed = failure;
+        failure = null;
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    /**
+     * Write what is still pending and stop the writer.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package sa.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads city files for every backend: the cities.txt format with one "id=x,y" city per line,
+ * and TSPLIB .tsp files with EUC_2D coordinates.
+ * <p>
+ * The text is memory-mapped and its digits are parsed straight from the buffer, without a
+ * String or boxed number per city. The parsed table is written next to the source as a
+ * binary cache, which later loads map directly while it is newer than the source.
+ */
+public final class CityLoader {
+    // appended to the source name for the binary cache
+    static final String CACHE_SUFFIX = ".bin";
+    // exact powers of ten, so a mantissa below 2^53 divided by one is correctly rounded
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final ByteBuffer buffer;
+    private int position;
+    private double[] x;
+    private double[] y;
+    private int size;
+
+    private CityLoader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+    }
+
+    /**
+     * Load a city file through its binary cache, parsing and caching it when the cache is
+     * missing, older than the file, or holds a different number of coordinates than its
+     * header says. A cache that cannot be written is only reported.
+     * <p>
+     * Ranks, places and daemon jobs load the same file at the same time, so the cache is
+     * written to a temporary file and renamed over the old one: a reader maps either a whole
+     * cache or none.
+     */
+    public static CityTable load(File file) throws IOException {
+        File cache = new File(file.getPath() + CACHE_SUFFIX);
+        if (cache.isFile() && cache.lastModified() >= file.lastModified()) {
+            try {
+                return CityTable.mapBinary(cache);
+            } catch (IOException e) {
+                System.out.println(">>> Ignoring city cache " + cache + ": " + e.getMessage());
+            }
+        }
+        CityTable cities = parse(file);
+        try {
+            writeCache(cities, cache);
+        } catch (IOException e) {
+            System.out.println(">>> Could not write city cache " + cache + ": " + e.getMessage());
+        }
+        return cities;
+    }
+
+    private static void writeCache(CityTable cities, File cache) throws IOException {
+        File dir = cache.getAbsoluteFile().getParentFile();
+        // unique per writer, so concurrent loads never write the same temporary file
+        Path temp = Files.createTempFile(dir.toPath(), cache.getName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                cities.writeBinary(out);
+            }
+            // temporary files are private to their owner, the cache is not
+            temp.toFile().setReadable(true, false);
+            Files.move(temp, cache.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Parse a city file without looking at its cache.
+     */
+    public static CityTable parse(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than 2 GiB");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(mapped, file.getName().endsWith(".tsp"));
+        }
+    }
+
+    /**
+     * Parse city text from the buffer's position to its limit.
+     *
+     * @param tsplib true for a TSPLIB file; a NODE_COORD_SECTION line is recognised either way
+     */
+    public static CityTable parse(ByteBuffer buffer, boolean tsplib) throws IOException {
+        CityLoader loader = new CityLoader(buffer);
+        loader.allocate(Math.max(16, buffer.remaining() / 16));
+        if (tsplib || loader.startsWithKeyword()) {
+            loader.readTsplib();
+        } else {
+            loader.readIdEqualsXy();
+        }
+        return new CityTable(Arrays.copyOf(loader.x, loader.size), Arrays.copyOf(loader.y, loader.size));
+    }
+
+    private void readIdEqualsXy() throws IOException {
+        while (skipWhitespace()) {
+            // the id is ignored, cities are numbered in file order
+            readNumber();
+            expect('=');
+            double cx = readNumber();
+            expect(',');
+            add(cx, readNumber());
+        }
+    }
+
+    private void readTsplib() throws IOException {
+        // "KEY : VALUE" header lines up to the coordinate section
+        while (true) {
+            if (!skipWhitespace()) {
+                throw new IOException("No NODE_COORD_SECTION");
+            }
+            String line = readLine().trim();
+            int colon = line.indexOf(':');
+            String key = (colon < 0 ? line : line.substring(0, colon)).trim();
+            String value = colon < 0 ? "" : line.substring(colon + 1).trim();
+            if ("NODE_COORD_SECTION".equals(key)) {
+                break;
+            } else if ("DIMENSION".equals(key)) {
+                allocate(Integer.parseInt(value));
+            } else if ("EDGE_WEIGHT_TYPE".equals(key) && !"EUC_2D".equals(value)) {
+                throw new IOException("Unsupported EDGE_WEIGHT_TYPE " + value + ", only EUC_2D is");
+            }
+        }
+        // "id x y" lines up to EOF or the end of the file
+        while (skipWhitespace() && !isLetter(buffer.get(position))) {
+            readNumber();
+            double cx = readNumber();
+            add(cx, readNumber());
+        }
+    }
+
+    /**
+     * @return true when the first non-blank character is a letter, as in a TSPLIB header
+     */
+    private boolean startsWithKeyword() {
+        int start = position;
+        boolean keyword = skipWhitespace() && isLetter(buffer.get(position));
+        position = start;
+        return keyword;
+    }
+
+    private void allocate(int capacity) {
+        if (x == null || capacity > x.length) {
+            x = x == null ? new double[capacity] : Arrays.copyOf(x, capacity);
+            y = y == null ? new double[capacity] : Arrays.copyOf(y, capacity);
+        }
+    }
+
+    private void add(double cx, double cy) {
+        if (size == x.length) {
+            allocate(2 * size);
+        }
+        x[size] = cx;
+        y[size] = cy;
+        size++;
+    }
+
+    /**
+     * Skip spaces, tabs and line breaks.
+     *
+     * @return false at the end of the buffer
+     */
+    private boolean skipWhitespace() {
+        int limit = buffer.limit();
+        while (position < limit && buffer.get(position) <= ' ') {
+            position++;
+        }
+        return position < limit;
+    }
+
+    private void expect(char c) throws IOException {
+        skipWhitespace();
+        if (position >= buffer.limit() || buffer.get(position) != c) {
+            throw new IOException("Expected '" + c + "' at byte " + position);
+        }
+        position++;
+    }
+
+    /**
+     * Parse a decimal number with optional sign, fraction and exponent, such as 12, -3.5 or 1.2e+03.
+     */
+    private double readNumber() throws IOException {
+        skipWhitespace();
+        int limit = buffer.limit();
+        int start = position;
+        boolean negative = false;
+        if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position++) == '-';
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; position < limit; position++) {
+            byte b = buffer.get(position);
+            if (b >= '0' && b <= '9') {
+                // digits past what a long holds only shift the exponent
+                if (mantissa < 1_000_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else if (!fraction) {
+                    exponent++;
+                }
+                digits++;
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            throw new IOException("Expected a number at byte " + start);
+        }
+        if (position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+            position++;
+            exponent += (int) readNumber();
+        }
+        double value = scale(mantissa, exponent);
+        return negative ? -value : value;
+    }
+
+    private static double scale(long mantissa, int exponent) {
+        if (exponent == 0) {
+            return mantissa;
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            return mantissa / POWERS_OF_TEN[-exponent];
+        } else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+            return mantissa * POWERS_OF_TEN[exponent];
+        }
+        return mantissa * Math.pow(10, exponent);
+    }
+
+    /**
+     * Read the rest of a header line as ASCII.
+     */
+    private String readLine() {
+        StringBuilder line = new StringBuilder();
+        int limit = buffer.limit();
+        while (position < limit) {
+            byte b = buffer.get(position++);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+}
@@ -0,0 +1,107 @@
+package sa.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * City coordinates stored as a struct of arrays, one array per axis.
+ */
+public final class CityTable implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // first int of a binary city file, "SACT"
+    private static final int BINARY_MAGIC = 0x53414354;
+
+    private final double[] x;
+    private final double[] y;
+
+    public CityTable(double[] x, double[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException("x has " + x.length + " coordinates but y has " + y.length);
+        }
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * @param cities list of cities with a pair of integer coordinates
+     */
+    public static CityTable of(List<int[]> cities) {
+        double[] x = new double[cities.size()];
+        double[] y = new double[cities.size()];
+        for (int i = 0; i < x.length; i++) {
+            int[] city = cities.get(i);
+            x[i] = city[0];
+            y[i] = city[1];
+        }
+        return new CityTable(x, y);
+    }
+
+    /**
+     * Write the binary form read by {@link #mapBinary}: a magic number, the city count, then
+     * every x and every y coordinate as big-endian doubles. The stream is flushed, not closed.
+     */
+    public void writeBinary(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(BINARY_MAGIC);
+        data.writeInt(x.length);
+        for (double value : x) {
+            data.writeDouble(value);
+        }
+        for (double value : y) {
+            data.writeDouble(value);
+        }
+        data.flush();
+    }
+
+    /**
+     * Memory-map a file written by {@link #writeBinary} and bulk copy both axes out of it,
+     * with no per-city parsing.
+     */
+    public static CityTable mapBinary(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != BINARY_MAGIC) {
+                throw new IOException(file + " is not a binary city file");
+            }
+            int size = buffer.getInt();
+            DoubleBuffer doubles = buffer.asDoubleBuffer();
+            if (doubles.remaining() != 2L * size) {
+                throw new IOException(file + " holds " + doubles.remaining() + " coordinates, expected " + 2L * size);
+            }
+            double[] x = new double[size];
+            double[] y = new double[size];
+            doubles.get(x);
+            doubles.get(y);
+            return new CityTable(x, y);
+        }
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double x(int city) {
+        return x[city];
+    }
+
+    public double y(int city) {
+        return y[city];
+    }
+
+    double[] xs() {
+        return x;
+    }
+
+    double[] ys() {
+        return y;
+    }
+}
@@ -0,0 +1,24 @@
+package sa.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one exchange between chains, such as an MPI Bcast or a Spark collect.
+ */
+@Name("sa.Communication")
+@Label("Annealing Communication")
+@Category("Simulated Annealing")
+@StackTrace(false)
+class CommunicationEvent extends jdk.jfr.Event {
+    @Label("Chain")
+    int chain;
+    @Label("Operation")
+    String operation;
+    @Label("Duration")
+    @Timespan
+    long nanos;
+}
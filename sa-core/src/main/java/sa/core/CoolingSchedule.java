@@ -0,0 +1,43 @@
+package sa.core;
+
+/**
+ * Temperature sequence of an annealing run, one temperature per step.
+ */
+public interface CoolingSchedule {
+
+    double initialTemperature();
+
+    /**
+     * @return temperature of the step after the one run at the given temperature
+     */
+    double next(double temperature);
+
+    /**
+     * @return true when the run should stop at this temperature
+     */
+    boolean isFrozen(double temperature);
+
+    /**
+     * Feedback after every step, before {@link #next} is asked for the following temperature.
+     * Fixed schedules ignore it; adaptive ones keep per-chain state, so every chain needs its
+     * own instance.
+     *
+     * @param acceptance fraction of the step's proposals that were accepted
+     * @param bestCost   best cost found so far
+     */
+    default void observe(double acceptance, double bestCost) {
+    }
+
+    /**
+     * @return what {@link #observe} changed, for a checkpoint; empty for fixed schedules
+     */
+    default double[] state() {
+        return new double[0];
+    }
+
+    /**
+     * Continue from a state returned by {@link #state} of a schedule built the same way.
+     */
+    default void restore(double[] state) {
+    }
+}
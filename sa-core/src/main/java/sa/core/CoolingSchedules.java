@@ -0,0 +1,59 @@
+package sa.core;
+
+/**
+ * Creates cooling schedules by name, so backends can select them from their configuration.
+ */
+public final class CoolingSchedules {
+    public static final String GEOMETRIC = "geometric";
+    public static final String LUNDY_MEES = "lundy-mees";
+    public static final String ACCEPTANCE = "acceptance";
+    public static final double DEFAULT_REHEAT = 10;
+
+    private CoolingSchedules() {
+    }
+
+    /**
+     * @param name {@link #GEOMETRIC}, {@link #LUNDY_MEES} or {@link #ACCEPTANCE}; Lundy-Mees
+     *             gets the beta that freezes in as many steps as the geometric schedule
+     * @param rate geometric cooling rate
+     */
+    public static CoolingSchedule create(String name, double initialTemperature, double rate) {
+        switch (name) {
+            case GEOMETRIC:
+                return new GeometricCooling(initialTemperature, rate);
+            case LUNDY_MEES:
+                return new LundyMeesCooling(initialTemperature,
+                        LundyMeesCooling.betaForSteps(initialTemperature, fixedSteps(initialTemperature, rate)));
+            case ACCEPTANCE:
+                return new AcceptanceRateCooling(initialTemperature, rate);
+            default:
+                throw new IllegalArgumentException("Unknown cooling schedule: " + name);
+        }
+    }
+
+    /**
+     * Schedule from the options cooling=name, stagnation=window (0 for none), reheats and
+     * reheat=factor.
+     */
+    public static CoolingSchedule create(Options options, double initialTemperature, double rate) {
+        CoolingSchedule schedule = create(options.get("cooling", GEOMETRIC), initialTemperature, rate);
+        int window = options.getInt("stagnation", 0);
+        if (window > 0) {
+            schedule = new StagnationControl(schedule, window, options.getInt("reheats", 0),
+                    options.getDouble("reheat", DEFAULT_REHEAT));
+        }
+        return schedule;
+    }
+
+    /**
+     * @return steps of the fixed geometric schedule, the baseline moves saved are measured against
+     */
+    public static long fixedSteps(double initialTemperature, double rate) {
+        CoolingSchedule fixed = new GeometricCooling(initialTemperature, rate);
+        long steps = 0;
+        for (double temp = initialTemperature; !fixed.isFrozen(temp); temp = fixed.next(temp)) {
+            steps++;
+        }
+        return steps;
+    }
+}
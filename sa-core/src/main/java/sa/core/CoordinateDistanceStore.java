@@ -0,0 +1,22 @@
+package sa.core;
+
+/**
+ * Distances computed on the fly from the coordinate arrays, for instances whose matrix does not fit.
+ */
+final class CoordinateDistanceStore extends DistanceStore {
+    private static final long serialVersionUID = 1L;
+
+    private final transient double[] x;
+    private final transient double[] y;
+
+    CoordinateDistanceStore(CityTable cities) {
+        super(cities);
+        x = cities.xs();
+        y = cities.ys();
+    }
+
+    @Override
+    public double distance(int from, int to) {
+        return euclidean(x, y, from, to);
+    }
+}
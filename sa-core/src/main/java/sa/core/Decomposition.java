@@ -0,0 +1,184 @@
+package sa.core;
+
+import java.util.Arrays;
+
+/**
+ * Spatial decomposition of a large instance into regions that are annealed independently.
+ * <p>
+ * The cities are cut into horizontal strips of equal city count, and every strip into cells
+ * of equal city count. Cells are numbered in snake order, left to right in even strips and
+ * right to left in odd ones, so consecutive regions are spatial neighbours. Each region's
+ * open sub-tour is annealed on its own {@link #region(int) city table}; {@link #stitch}
+ * joins them in region order, turning each sub-tour around when that shortens the joining
+ * edge, and {@link #repair} runs 2-opt around every join.
+ */
+public final class Decomposition {
+    private final CityTable cities;
+    // global city ids of every region, indexed by the region's local city index
+    private final int[][] members;
+
+    private Decomposition(CityTable cities, int[][] members) {
+        this.cities = cities;
+        this.members = members;
+    }
+
+    /**
+     * @param regionSize cities per region, the last region of a strip may differ by the rounding
+     */
+    public static Decomposition of(CityTable cities, int regionSize) {
+        int n = cities.size();
+        int regions = Math.max(1, (n + regionSize - 1) / Math.max(1, regionSize));
+        int strips = Math.max(1, (int) Math.round(Math.sqrt(regions)));
+        int cells = (regions + strips - 1) / strips;
+        int[] byY = sortBy(cities.ys(), identity(n));
+        int[][] members = new int[strips * cells][];
+        int count = 0;
+        for (int s = 0; s < strips; s++) {
+            int[] strip = sortBy(cities.xs(), Arrays.copyOfRange(byY, slice(n, strips, s), slice(n, strips, s + 1)));
+            for (int c = 0; c < cells; c++) {
+                int cell = s % 2 == 0 ? c : cells - 1 - c;
+                int[] region = Arrays.copyOfRange(strip, slice(strip.length, cells, cell), slice(strip.length, cells, cell + 1));
+                if (region.length > 0) {
+                    members[count++] = region;
+                }
+            }
+        }
+        return new Decomposition(cities, Arrays.copyOf(members, count));
+    }
+
+    public int regions() {
+        return members.length;
+    }
+
+    /**
+     * @return global city ids of the region, indexed by local city index
+     */
+    public int[] members(int region) {
+        return members[region];
+    }
+
+    /**
+     * @return coordinates of the region's cities, indexed by local city index
+     */
+    public CityTable region(int region) {
+        int[] ids = members[region];
+        double[] x = new double[ids.length];
+        double[] y = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            x[i] = cities.x(ids[i]);
+            y[i] = cities.y(ids[i]);
+        }
+        return new CityTable(x, y);
+    }
+
+    /**
+     * Join the annealed sub-tours in region order into one tour of global city ids.
+     *
+     * @param subTours tour of every region in local city indices
+     */
+    public int[] stitch(DistanceStore distances, int[][] subTours) {
+        int[] tour = new int[cities.size()];
+        int position = 0;
+        for (int r = 0; r < members.length; r++) {
+            int[] ids = members[r];
+            int[] sub = subTours[r];
+            int first = ids[sub[0]];
+            int last = ids[sub[sub.length - 1]];
+            boolean reverse;
+            if (r > 0) {
+                // start where the previous region ended
+                int previous = tour[position - 1];
+                reverse = distances.distance(previous, last) < distances.distance(previous, first);
+            } else if (members.length > 1) {
+                // end next to either end of the following region
+                int[] next = members[1];
+                int nextFirst = next[subTours[1][0]];
+                int nextLast = next[subTours[1][subTours[1].length - 1]];
+                reverse = Math.min(distances.distance(first, nextFirst), distances.distance(first, nextLast))
+                        < Math.min(distances.distance(last, nextFirst), distances.distance(last, nextLast));
+            } else {
+                reverse = false;
+            }
+            for (int i = 0; i < sub.length; i++) {
+                tour[position++] = ids[sub[reverse ? sub.length - 1 - i : i]];
+            }
+        }
+        return tour;
+    }
+
+    /**
+     * First-improvement 2-opt within a window of positions around every join of a stitched
+     * tour, until no reversal inside a window shortens the tour. Reversals stay inside their
+     * window, so the cost of a pass does not grow with the size of the regions.
+     *
+     * @param window positions on each side of a join
+     * @return number of improving reversals applied
+     */
+    public int repair(DistanceStore distances, int[] tour, int window) {
+        int applied = 0;
+        int join = 0;
+        for (int r = 0; r + 1 < members.length; r++) {
+            join += members[r].length;
+            int from = Math.max(1, join - window);
+            int to = Math.min(tour.length - 2, join + window - 1);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int i = from; i < to; i++) {
+                    for (int j = i + 1; j <= to; j++) {
+                        double delta = distances.distance(tour[i - 1], tour[j]) + distances.distance(tour[i], tour[j + 1])
+                                - distances.distance(tour[i - 1], tour[i]) - distances.distance(tour[j], tour[j + 1]);
+                        if (delta < -1e-9) {
+                            reverse(tour, i, j);
+                            applied++;
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static void reverse(int[] tour, int i, int j) {
+        for (; i < j; i++, j--) {
+            int temp = tour[i];
+            tour[i] = tour[j];
+            tour[j] = temp;
+        }
+    }
+
+    /**
+     * @return start of part k when n items are cut into parts of equal size
+     */
+    private static int slice(int n, int parts, int k) {
+        return (int) ((long) n * k / parts);
+    }
+
+    private static int[] identity(int n) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    /**
+     * Sort city ids by a coordinate, packing the coordinate's order-preserving float bits and
+     * the id into one long so a primitive sort does the work.
+     */
+    private static int[] sortBy(double[] coordinate, int[] ids) {
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int bits = Float.floatToIntBits((float) coordinate[ids[i]]);
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            keys[i] = ((long) bits << 32) | ids[i];
+        }
+        Arrays.sort(keys);
+        int[] sorted = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sorted[i] = (int) keys[i];
+        }
+        return sorted;
+    }
+}
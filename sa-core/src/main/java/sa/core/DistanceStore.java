@@ -0,0 +1,130 @@
+package sa.core;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Euclidean distances between the cities of one instance.
+ * <p>
+ * Three layouts share this interface: a dense matrix ({@link MatrixDistanceStore}) for
+ * instances small enough to keep every distance in memory, the same matrix in floats
+ * ({@link FloatMatrixDistanceStore}) for instances up to about 1.4 times larger, and the
+ * bare coordinate table ({@link CoordinateDistanceStore}) computing distances on the fly for
+ * large instances. {@link #create(CityTable)} picks between them from the city count and a
+ * memory budget.
+ * <p>
+ * Only the coordinates are serialised; the receiving JVM rebuilds the layout that fits its
+ * own budget, so a store can be captured in Spark closures or passed to MASS places.
+ */
+public abstract class DistanceStore implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * System property holding the number of bytes a distance matrix may use.
+     */
+    public static final String BUDGET_PROPERTY = "sa.distance.budget";
+    // roughly the last level cache of the nodes we run on
+    private static final long DEFAULT_BUDGET = 16L << 20;
+
+    protected final CityTable cities;
+    private transient NeighbourLists neighbours;
+
+    DistanceStore(CityTable cities) {
+        this.cities = cities;
+    }
+
+    /**
+     * Create the store layout fitting the budget from {@link #BUDGET_PROPERTY}.
+     */
+    public static DistanceStore create(CityTable cities) {
+        return create(cities, Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * @param budgetBytes memory a dense matrix may use, an instance whose float matrix does not
+     *                    fit either gets the coordinate layout
+     */
+    public static DistanceStore create(CityTable cities, long budgetBytes) {
+        if (MatrixDistanceStore.bytesFor(cities.size()) <= budgetBytes) {
+            return new MatrixDistanceStore(cities);
+        }
+        if (FloatMatrixDistanceStore.bytesFor(cities.size()) <= budgetBytes) {
+            return new FloatMatrixDistanceStore(cities);
+        }
+        return new CoordinateDistanceStore(cities);
+    }
+
+    /**
+     * @return distance between two cities
+     */
+    public abstract double distance(int from, int to);
+
+    public final int size() {
+        return cities.size();
+    }
+
+    public final CityTable cities() {
+        return cities;
+    }
+
+    /**
+     * @return the k nearest neighbours of every city, built once and shared by all moves on this store
+     */
+    public synchronized NeighbourLists neighbours(int k) {
+        int wanted = Math.max(0, Math.min(k, size() - 1));
+        if (neighbours == null || neighbours.k() != wanted) {
+            neighbours = NeighbourLists.build(cities, wanted);
+        }
+        return neighbours;
+    }
+
+    /**
+     * @return length of the path visiting the cities in tour order
+     */
+    public double tourCost(int[] tour) {
+        double sum = 0;
+        for (int i = 1; i < tour.length; i++) {
+            sum += distance(tour[i - 1], tour[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * @return length of the path visiting the cities in tour order
+     */
+    public double tourCost(List<Integer> tour) {
+        double sum = 0;
+        int previous = tour.get(0);
+        for (int i = 1; i < tour.size(); i++) {
+            int city = tour.get(i);
+            sum += distance(previous, city);
+            previous = city;
+        }
+        return sum;
+    }
+
+    static double euclidean(double[] x, double[] y, int from, int to) {
+        double dx = x[from] - x[to];
+        double dy = y[from] - y[to];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(cities);
+    }
+
+    private static final class SerializedForm implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final CityTable cities;
+
+        SerializedForm(CityTable cities) {
+            this.cities = cities;
+        }
+
+        Object readResolve() throws ObjectStreamException {
+            return create(cities);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package sa.core;
+
+/**
+ * Dense row-major distance matrix of floats, half the size of {@link MatrixDistanceStore}, for
+ * instances whose double matrix does not fit the budget. Distances keep about seven
+ * significant digits, so tour costs differ from the exact ones in the last places.
+ */
+final class FloatMatrixDistanceStore extends DistanceStore {
+    private static final long serialVersionUID = 1L;
+
+    private final transient int n;
+    private final transient float[] matrix;
+
+    FloatMatrixDistanceStore(CityTable cities) {
+        super(cities);
+        n = cities.size();
+        matrix = new float[n * n];
+        double[] x = cities.xs();
+        double[] y = cities.ys();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                float d = (float) euclidean(x, y, i, j);
+                matrix[i * n + j] = d;
+                matrix[j * n + i] = d;
+            }
+        }
+    }
+
+    /**
+     * @return bytes used by the matrix of an n city instance, or Long.MAX_VALUE when it cannot be indexed
+     */
+    static long bytesFor(int n) {
+        long cells = (long) n * n;
+        return cells > Integer.MAX_VALUE - 8 ? Long.MAX_VALUE : cells * Float.BYTES;
+    }
+
+    @Override
+    public double distance(int from, int to) {
+        return matrix[from * n + to];
+    }
+}
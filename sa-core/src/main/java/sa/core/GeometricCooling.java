@@ -0,0 +1,34 @@
+package sa.core;
+
+/**
+ * Multiply the temperature by (1 - rate) every step until it drops to 1.
+ */
+public final class GeometricCooling implements CoolingSchedule {
+    private static final double FROZEN_TEMPERATURE = 1;
+
+    private final double initialTemperature;
+    private final double factor;
+
+    public GeometricCooling(double initialTemperature, double rate) {
+        if (rate <= 0 || rate >= 1) {
+            throw new IllegalArgumentException("Cooling rate must be in (0, 1): " + rate);
+        }
+        this.initialTemperature = initialTemperature;
+        this.factor = 1 - rate;
+    }
+
+    @Override
+    public double initialTemperature() {
+        return initialTemperature;
+    }
+
+    @Override
+    public double next(double temperature) {
+        return temperature * factor;
+    }
+
+    @Override
+    public boolean isFrozen(double temperature) {
+        return temperature <= FROZEN_TEMPERATURE;
+    }
+}
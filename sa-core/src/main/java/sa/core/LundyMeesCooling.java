@@ -0,0 +1,42 @@
+package sa.core;
+
+/**
+ * Lundy-Mees cooling: T' = T / (1 + beta T) every step until the temperature drops to 1.
+ * It cools fast while hot and slowly near the end, where most of the improvement happens.
+ */
+public final class LundyMeesCooling implements CoolingSchedule {
+    private static final double FROZEN_TEMPERATURE = 1;
+
+    private final double initialTemperature;
+    private final double beta;
+
+    public LundyMeesCooling(double initialTemperature, double beta) {
+        if (beta <= 0) {
+            throw new IllegalArgumentException("Lundy-Mees beta must be positive: " + beta);
+        }
+        this.initialTemperature = initialTemperature;
+        this.beta = beta;
+    }
+
+    /**
+     * @return beta reaching the frozen temperature in the given number of steps
+     */
+    static double betaForSteps(double initialTemperature, long steps) {
+        return (1 / FROZEN_TEMPERATURE - 1 / initialTemperature) / Math.max(1, steps);
+    }
+
+    @Override
+    public double initialTemperature() {
+        return initialTemperature;
+    }
+
+    @Override
+    public double next(double temperature) {
+        return temperature / (1 + beta * temperature);
+    }
+
+    @Override
+    public boolean isFrozen(double temperature) {
+        return temperature <= FROZEN_TEMPERATURE;
+    }
+}
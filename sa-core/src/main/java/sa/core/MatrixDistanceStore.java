@@ -0,0 +1,39 @@
+package sa.core;
+
+/**
+ * Dense row-major distance matrix in one flat array.
+ */
+final class MatrixDistanceStore extends DistanceStore {
+    private static final long serialVersionUID = 1L;
+
+    private final transient int n;
+    private final transient double[] matrix;
+
+    MatrixDistanceStore(CityTable cities) {
+        super(cities);
+        n = cities.size();
+        matrix = new double[n * n];
+        double[] x = cities.xs();
+        double[] y = cities.ys();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double d = euclidean(x, y, i, j);
+                matrix[i * n + j] = d;
+                matrix[j * n + i] = d;
+            }
+        }
+    }
+
+    /**
+     * @return bytes used by the matrix of an n city instance, or Long.MAX_VALUE when it cannot be indexed
+     */
+    static long bytesFor(int n) {
+        long cells = (long) n * n;
+        return cells > Integer.MAX_VALUE - 8 ? Long.MAX_VALUE : cells * Double.BYTES;
+    }
+
+    @Override
+    public double distance(int from, int to) {
+        return matrix[from * n + to];
+    }
+}
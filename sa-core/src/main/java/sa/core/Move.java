@@ -0,0 +1,27 @@
+package sa.core;
+
+/**
+ * A neighbourhood operator working in place on a tour.
+ * <p>
+ * The annealing loop asks for a random candidate with {@link #propose}, decides on the
+ * returned cost change, and calls {@link #apply} only when the candidate is accepted.
+ */
+public interface Move {
+
+    /**
+     * Bind the move to the tour it works on; call again whenever the tour is replaced.
+     */
+    void reset(int[] tour);
+
+    /**
+     * Pick a random candidate move.
+     *
+     * @return cost change of the candidate
+     */
+    double propose(Rng rand);
+
+    /**
+     * Apply the last proposed candidate to the tour.
+     */
+    void apply();
+}
@@ -0,0 +1,32 @@
+package sa.core;
+
+/**
+ * Creates the move operators by name, so backends can select them from their configuration.
+ */
+public final class Moves {
+    public static final String SWAP = "swap";
+    public static final String TWO_OPT = "2opt";
+    public static final int DEFAULT_NEIGHBOURS = 10;
+
+    private Moves() {
+    }
+
+    public static Move create(String name, DistanceStore distances) {
+        return create(name, distances, DEFAULT_NEIGHBOURS);
+    }
+
+    /**
+     * @param name       {@link #SWAP} or {@link #TWO_OPT}
+     * @param neighbours candidate neighbours per city for the 2-opt move
+     */
+    public static Move create(String name, DistanceStore distances, int neighbours) {
+        switch (name) {
+            case SWAP:
+                return new SwapMove(distances);
+            case TWO_OPT:
+                return new TwoOptMove(distances, distances.neighbours(neighbours));
+            default:
+                throw new IllegalArgumentException("Unknown move: " + name);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package sa.core;
+
+import java.util.Arrays;
+
+/**
+ * The k nearest neighbours of every city, found through a uniform grid so building the
+ * lists stays close to O(n k) instead of comparing all pairs.
+ */
+public final class NeighbourLists {
+    // average number of cities per grid cell
+    private static final double CITIES_PER_CELL = 2.0;
+
+    private final int k;
+    private final int[] neighbours;
+
+    private NeighbourLists(int k, int[] neighbours) {
+        this.k = k;
+        this.neighbours = neighbours;
+    }
+
+    /**
+     * @param k neighbours per city, capped at the number of other cities
+     */
+    public static NeighbourLists build(CityTable cities, int k) {
+        int n = cities.size();
+        k = Math.max(0, Math.min(k, n - 1));
+        int[] neighbours = new int[n * k];
+        if (k == 0) {
+            return new NeighbourLists(0, neighbours);
+        }
+        Grid grid = new Grid(cities);
+        double[] bestDistance = new double[k];
+        int[] bestCity = new int[k];
+        for (int city = 0; city < n; city++) {
+            int found = grid.nearest(city, bestDistance, bestCity);
+            System.arraycopy(bestCity, 0, neighbours, city * k, found);
+        }
+        return new NeighbourLists(k, neighbours);
+    }
+
+    /**
+     * @return number of neighbours stored per city
+     */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * @return the rank-th nearest neighbour of city, rank 0 being the closest
+     */
+    public int get(int city, int rank) {
+        return neighbours[city * k + rank];
+    }
+
+    private static final class Grid {
+        private final double[] x;
+        private final double[] y;
+        private final double minX;
+        private final double minY;
+        private final double cellSize;
+        private final int columns;
+        private final int rows;
+        // cities sorted by cell, cell c holding cityOfSlot[cellStart[c] .. cellStart[c + 1])
+        private final int[] cellStart;
+        private final int[] cityOfSlot;
+
+        Grid(CityTable cities) {
+            x = cities.xs();
+            y = cities.ys();
+            int n = x.length;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            double lowX = Double.POSITIVE_INFINITY;
+            double lowY = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                lowX = Math.min(lowX, x[i]);
+                lowY = Math.min(lowY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            minX = lowX;
+            minY = lowY;
+            double width = Math.max(maxX - minX, 1e-9);
+            double height = Math.max(maxY - minY, 1e-9);
+            double size = Math.sqrt(width * height * CITIES_PER_CELL / n);
+            // keep the grid within about n cells even for degenerate (collinear) inputs
+            size = Math.max(size, Math.max(width, height) / Math.max(1, n));
+            cellSize = size;
+            columns = (int) (width / size) + 1;
+            rows = (int) (height / size) + 1;
+            cellStart = new int[columns * rows + 1];
+            cityOfSlot = new int[n];
+            int[] cellOf = new int[n];
+            for (int i = 0; i < n; i++) {
+                cellOf[i] = cell(column(x[i]), row(y[i]));
+                cellStart[cellOf[i] + 1]++;
+            }
+            for (int c = 0; c < columns * rows; c++) {
+                cellStart[c + 1] += cellStart[c];
+            }
+            int[] next = Arrays.copyOf(cellStart, columns * rows);
+            for (int i = 0; i < n; i++) {
+                cityOfSlot[next[cellOf[i]]++] = i;
+            }
+        }
+
+        /**
+         * Fill the arrays with the nearest cities, closest first, searching rings of cells
+         * around the city until no unvisited cell can hold a closer one.
+         *
+         * @return number of neighbours found
+         */
+        int nearest(int city, double[] bestDistance, int[] bestCity) {
+            int k = bestCity.length;
+            int found = 0;
+            int column = column(x[city]);
+            int row = row(y[city]);
+            int maxRing = Math.max(columns, rows);
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int r = row - ring; r <= row + ring; r++) {
+                    if (r < 0 || r >= rows) {
+                        continue;
+                    }
+                    boolean edgeRow = r == row - ring || r == row + ring;
+                    int step = edgeRow ? 1 : 2 * ring;
+                    for (int c = column - ring; c <= column + ring; c += Math.max(1, step)) {
+                        if (c < 0 || c >= columns) {
+                            continue;
+                        }
+                        int cell = cell(c, r);
+                        for (int slot = cellStart[cell]; slot < cellStart[cell + 1]; slot++) {
+                            int other = cityOfSlot[slot];
+                            if (other != city) {
+                                double dx = x[city] - x[other];
+                                double dy = y[city] - y[other];
+                                found = insert(dx * dx + dy * dy, other, bestDistance, bestCity, found);
+                            }
+                        }
+                    }
+                }
+                // every city outside the rings searched so far is at least ring * cellSize away
+                double reach = ring * cellSize;
+                if (found == k && bestDistance[k - 1] <= reach * reach) {
+                    break;
+                }
+            }
+            return found;
+        }
+
+        private static int insert(double distance, int city, double[] bestDistance, int[] bestCity, int found) {
+            int k = bestCity.length;
+            if (found == k && distance >= bestDistance[k - 1]) {
+                return found;
+            }
+            int i = found == k ? k - 1 : found++;
+            while (i > 0 && bestDistance[i - 1] > distance) {
+                bestDistance[i] = bestDistance[i - 1];
+                bestCity[i] = bestCity[i - 1];
+                i--;
+            }
+            bestDistance[i] = distance;
+            bestCity[i] = city;
+            return found;
+        }
+
+        private int column(double px) {
+            return Math.min(columns - 1, (int) ((px - minX) / cellSize));
+        }
+
+        private int row(double py) {
+            return Math.min(rows - 1, (int) ((py - minY) / cellSize));
+        }
+
+        private int cell(int column, int row) {
+            return row * columns + column;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package sa.core;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Solver options given as key=value program arguments.
+ * <p>
+ * A key missing from the arguments falls back to the system property "sa." + key, then
+ * to the default passed by the caller. Options are serializable so Spark tasks can read them.
+ */
+public final class Options implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String PROPERTY_PREFIX = "sa.";
+
+    private final Map<String, String> values;
+
+    private Options(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param from index of the first key=value argument, earlier ones are positional
+     */
+    public static Options parse(String[] args, int from) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = from; i < args.length; i++) {
+            int split = args[i].indexOf('=');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + args[i]);
+            }
+            values.put(args[i].substring(0, split), args[i].substring(split + 1));
+        }
+        return new Options(values);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            value = System.getProperty(PROPERTY_PREFIX + key);
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
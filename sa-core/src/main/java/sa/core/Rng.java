@@ -0,0 +1,54 @@
+package sa.core;
+
+import java.util.Random;
+
+/**
+ * Source of randomness for the annealing engine.
+ */
+public interface Rng {
+
+    /**
+     * @return uniformly distributed int in [0, bound)
+     */
+    int nextInt(int bound);
+
+    /**
+     * @return uniformly distributed double in [0, 1)
+     */
+    double nextDouble();
+
+    long nextLong();
+
+    /**
+     * @return the generator's state, from which {@link #restore} continues the same sequence
+     */
+    byte[] state();
+
+    void restore(byte[] state);
+
+    /**
+     * Independent stream of a master seed, for one chain, rank, place, partition or thread:
+     * a xoshiro256** generator seeded with the master seed and jumped 2^128 numbers ahead
+     * once per stream index. Different streams of one seed never overlap, so a parallel run
+     * is reproducible from its master seed alone. Creating stream k costs k jumps.
+     *
+     * @param stream non-negative stream index
+     */
+    static Rng stream(long masterSeed, int stream) {
+        if (stream < 0) {
+            throw new IllegalArgumentException("Stream index must not be negative: " + stream);
+        }
+        Xoshiro256 rng = new Xoshiro256(masterSeed);
+        for (int i = 0; i < stream; i++) {
+            rng.jump();
+        }
+        return rng;
+    }
+
+    /**
+     * @return generator drawing from the given java.util.Random, so existing seeds keep their sequence
+     */
+    static Rng of(Random random) {
+        return new JdkRng(random);
+    }
+}
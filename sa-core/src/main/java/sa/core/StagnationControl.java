@@ -0,0 +1,93 @@
+package sa.core;
+
+import java.util.Arrays;
+
+/**
+ * Wraps a schedule to react when the best cost stops improving.
+ * <p>
+ * After {@code window} steps without a new best, the temperature is reheated by the given
+ * factor, up to the initial temperature, as long as reheats are left; after that the run is
+ * frozen and stops early.
+ */
+public final class StagnationControl implements CoolingSchedule {
+    private final CoolingSchedule schedule;
+    private final int window;
+    private final double reheatFactor;
+    private int reheatsLeft;
+    private double bestCost = Double.POSITIVE_INFINITY;
+    private int stagnantSteps;
+    private boolean stopped;
+
+    /**
+     * @param window       steps without a new best before reacting
+     * @param reheats      reheats before stopping, 0 to stop at the first stagnation
+     * @param reheatFactor temperature multiplier of a reheat
+     */
+    public StagnationControl(CoolingSchedule schedule, int window, int reheats, double reheatFactor) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Stagnation window must be positive: " + window);
+        }
+        this.schedule = schedule;
+        this.window = window;
+        this.reheatsLeft = reheats;
+        this.reheatFactor = reheatFactor;
+    }
+
+    @Override
+    public double initialTemperature() {
+        return schedule.initialTemperature();
+    }
+
+    @Override
+    public void observe(double acceptance, double bestCost) {
+        schedule.observe(acceptance, bestCost);
+        if (bestCost < this.bestCost) {
+            this.bestCost = bestCost;
+            stagnantSteps = 0;
+        } else {
+            stagnantSteps++;
+        }
+    }
+
+    /**
+     * @return own state followed by the wrapped schedule's
+     */
+    @Override
+    public double[] state() {
+        double[] inner = schedule.state();
+        double[] state = new double[4 + inner.length];
+        state[0] = reheatsLeft;
+        state[1] = bestCost;
+        state[2] = stagnantSteps;
+        state[3] = stopped ? 1 : 0;
+        System.arraycopy(inner, 0, state, 4, inner.length);
+        return state;
+    }
+
+    @Override
+    public void restore(double[] state) {
+        reheatsLeft = (int) state[0];
+        bestCost = state[1];
+        stagnantSteps = (int) state[2];
+        stopped = state[3] != 0;
+        schedule.restore(Arrays.copyOfRange(state, 4, state.length));
+    }
+
+    @Override
+    public double next(double temperature) {
+        if (stagnantSteps >= window) {
+            stagnantSteps = 0;
+            if (reheatsLeft > 0) {
+                reheatsLeft--;
+                return Math.min(schedule.initialTemperature(), temperature * reheatFactor);
+            }
+            stopped = true;
+        }
+        return schedule.next(temperature);
+    }
+
+    @Override
+    public boolean isFrozen(double temperature) {
+        return stopped || schedule.isFrozen(temperature);
+    }
+}
@@ -0,0 +1,40 @@
+package sa.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of one temperature step, committed by {@link Trace}.
+ */
+@Name("sa.Step")
+@Label("Annealing Step")
+@Category("Simulated Annealing")
+@StackTrace(false)
+class StepEvent extends jdk.jfr.Event {
+    @Label("Chain")
+    int chain;
+    @Label("Step")
+    long step;
+    @Label("Temperature")
+    double temperature;
+    @Label("Current Cost")
+    double current;
+    @Label("Best Cost")
+    double best;
+    @Label("Acceptance Rate")
+    double acceptance;
+    @Label("Moves Proposed")
+    long proposed;
+    @Label("Moves Accepted")
+    long accepted;
+    @Label("Moves Improving")
+    long improving;
+    @Label("Communication Time")
+    @Description("Time spent exchanging with other chains since the previous step")
+    @Timespan
+    long communication;
+}
@@ -0,0 +1,70 @@
+package sa.core;
+
+/**
+ * Swap the cities at two random positions.
+ * <p>
+ * The cost change is computed from the (at most four) edges that touch the two positions.
+ */
+public final class SwapMove implements Move {
+    private final DistanceStore distances;
+    private int[] tour;
+    private int first;
+    private int second;
+
+    public SwapMove(DistanceStore distances) {
+        this.distances = distances;
+    }
+
+    @Override
+    public void reset(int[] tour) {
+        this.tour = tour;
+    }
+
+    @Override
+    public double propose(Rng rand) {
+        first = rand.nextInt(tour.length);
+        second = rand.nextInt(tour.length);
+        return delta(first, second);
+    }
+
+    @Override
+    public void apply() {
+        int temp = tour[first];
+        tour[first] = tour[second];
+        tour[second] = temp;
+    }
+
+    /**
+     * @return cost change of swapping the cities at positions i and j
+     */
+    double delta(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        int a = Math.min(i, j);
+        int b = Math.max(i, j);
+        int cityA = tour[a];
+        int cityB = tour[b];
+        int last = tour.length - 1;
+        double delta = 0;
+        if (b == a + 1) {
+            // adjacent positions share the edge (a, b), which keeps its length
+            if (a > 0) {
+                delta += distances.distance(tour[a - 1], cityB) - distances.distance(tour[a - 1], cityA);
+            }
+            if (b < last) {
+                delta += distances.distance(cityA, tour[b + 1]) - distances.distance(cityB, tour[b + 1]);
+            }
+            return delta;
+        }
+        if (a > 0) {
+            delta += distances.distance(tour[a - 1], cityB) - distances.distance(tour[a - 1], cityA);
+        }
+        delta += distances.distance(cityB, tour[a + 1]) - distances.distance(cityA, tour[a + 1]);
+        delta += distances.distance(tour[b - 1], cityA) - distances.distance(tour[b - 1], cityB);
+        if (b < last) {
+            delta += distances.distance(cityA, tour[b + 1]) - distances.distance(cityB, tour[b + 1]);
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,63 @@
+package sa.core;
+
+/**
+ * Compact byte encoding of a tour: the city count, then the difference between consecutive
+ * cities, each zigzag and varint encoded.
+ * <p>
+ * Small differences take one or two bytes instead of four, which pays off on the large
+ * tours shipped between the driver and the workers.
+ */
+public final class TourCodec {
+
+    private TourCodec() {
+    }
+
+    public static byte[] pack(int[] tour) {
+        byte[] buffer = new byte[5 * (tour.length + 1)];
+        int length = writeVarint(buffer, 0, tour.length);
+        int previous = 0;
+        for (int city : tour) {
+            int delta = city - previous;
+            length = writeVarint(buffer, length, (delta << 1) ^ (delta >> 31));
+            previous = city;
+        }
+        byte[] packed = new byte[length];
+        System.arraycopy(buffer, 0, packed, 0, length);
+        return packed;
+    }
+
+    public static int[] unpack(byte[] packed) {
+        int[] position = {0};
+        int[] tour = new int[readVarint(packed, position)];
+        int previous = 0;
+        for (int i = 0; i < tour.length; i++) {
+            int zigzag = readVarint(packed, position);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            tour[i] = previous;
+        }
+        return tour;
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * @param position index of the next byte, advanced past the varint
+     */
+    private static int readVarint(byte[] buffer, int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package sa.core;
+
+import java.util.Arrays;
+
+/**
+ * Starting tours for the annealing chains.
+ * <p>
+ * Besides a random shuffle, three O(n log n) constructors start the chains close to a good
+ * tour: the order of the cities along a Hilbert curve, nearest neighbour over the k nearest
+ * lists, and greedy edge matching. A constructed tour has little left for the hot steps to
+ * undo, so {@link #temperature} lowers the starting temperature to match.
+ */
+public final class Tours {
+    public static final String RANDOM = "random";
+    public static final String HILBERT = "hilbert";
+    public static final String NEAREST = "nearest";
+    public static final String GREEDY = "greedy";
+    // cells per side of the grid the Hilbert curve runs through
+    private static final int HILBERT_ORDER = 15;
+
+    private Tours() {
+    }
+
+    /**
+     * @param name       {@link #RANDOM}, {@link #HILBERT}, {@link #NEAREST} or {@link #GREEDY}
+     * @param neighbours nearest neighbours per city the nearest and greedy constructors look at,
+     *                   best the same as the 2-opt move's so both share one list
+     * @param rng        draws the shuffle, or the first city of a nearest neighbour tour
+     */
+    public static int[] create(String name, DistanceStore distances, int neighbours, Rng rng) {
+        switch (name) {
+            case RANDOM:
+                return shuffled(distances.size(), rng);
+            case HILBERT:
+                return hilbert(distances.cities());
+            case NEAREST:
+                return nearestNeighbour(distances, neighbours, rng);
+            case GREEDY:
+                return greedy(distances, neighbours);
+            default:
+                throw new IllegalArgumentException("Unknown initial tour: " + name);
+        }
+    }
+
+    /**
+     * @return starting temperature for a tour built by the named constructor: the better the
+     * constructor's tours, the less of the hot end of the schedule they need
+     */
+    public static double temperature(String name, double temperature) {
+        switch (name) {
+            case HILBERT:
+                return temperature * 0.3;
+            case NEAREST:
+                return temperature * 0.2;
+            case GREEDY:
+                return temperature * 0.1;
+            default:
+                return temperature;
+        }
+    }
+
+    /**
+     * @return a uniformly random permutation of the cities, by Fisher-Yates
+     */
+    public static int[] shuffled(int size, Rng rng) {
+        int[] tour = new int[size];
+        for (int i = 0; i < size; i++) {
+            tour[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int city = tour[i];
+            tour[i] = tour[j];
+            tour[j] = city;
+        }
+        return tour;
+    }
+
+    /**
+     * @return the cities in the order a Hilbert curve over their bounding box visits them
+     */
+    public static int[] hilbert(CityTable cities) {
+        double[] x = cities.xs();
+        double[] y = cities.ys();
+        int n = x.length;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        int side = 1 << HILBERT_ORDER;
+        // one scale for both axes keeps the curve's cells square
+        double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+        // curve position, below 2^30, in the high half and city in the low half, so one primitive
+        // sort orders both
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            long d = hilbertIndex(side, (int) ((x[i] - minX) * scale), (int) ((y[i] - minY) * scale));
+            keys[i] = d << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] tour = new int[n];
+        for (int i = 0; i < n; i++) {
+            tour[i] = (int) keys[i];
+        }
+        return tour;
+    }
+
+    /**
+     * @return distance along the Hilbert curve filling a side x side grid to cell (x, y)
+     */
+    private static long hilbertIndex(int side, int x, int y) {
+        long d = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve inside it runs the right way
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Nearest neighbour tour from a random city. The next city is the closest unvisited one of
+     * the current city's nearest list; when the whole list is visited, the tour jumps to the
+     * first unvisited city along the Hilbert curve instead of searching every city.
+     */
+    public static int[] nearestNeighbour(DistanceStore distances, int neighbours, Rng rng) {
+        int n = distances.size();
+        NeighbourLists lists = distances.neighbours(neighbours);
+        int[] order = hilbert(distances.cities());
+        boolean[] visited = new boolean[n];
+        int[] tour = new int[n];
+        int cursor = 0;
+        int city = rng.nextInt(n);
+        for (int i = 0; i < n; i++) {
+            tour[i] = city;
+            visited[city] = true;
+            if (i == n - 1) {
+                break;
+            }
+            int next = -1;
+            for (int rank = 0; rank < lists.k() && next < 0; rank++) {
+                int candidate = lists.get(city, rank);
+                if (!visited[candidate]) {
+                    next = candidate;
+                }
+            }
+            if (next < 0) {
+                while (visited[order[cursor]]) {
+                    cursor++;
+                }
+                next = order[cursor];
+            }
+            city = next;
+        }
+        return tour;
+    }
+
+    /**
+     * Greedy edge matching: take the candidate edges of the nearest lists from shortest to
+     * longest, keeping every edge that leaves both cities with at most two edges and closes no
+     * cycle. The resulting paths are joined in the Hilbert order of their first end.
+     */
+    public static int[] greedy(DistanceStore distances, int neighbours) {
+        int n = distances.size();
+        NeighbourLists lists = distances.neighbours(neighbours);
+        int k = lists.k();
+        // edge length as float bits in the high half, edge number in the low half; non-negative
+        // floats order like their bits
+        long[] edges = new long[n * k];
+        int count = 0;
+        for (int city = 0; city < n; city++) {
+            for (int rank = 0; rank < k; rank++) {
+                int other = lists.get(city, rank);
+                // an edge in both cities' lists is sorted once
+                if (other < city && inList(lists, other, city)) {
+                    continue;
+                }
+                float length = (float) distances.distance(city, other);
+                edges[count++] = (long) Float.floatToIntBits(length) << 32 | (city * k + rank);
+            }
+        }
+        edges = Arrays.copyOf(edges, count);
+        Arrays.sort(edges);
+        // the two cities every city is linked to, -1 for none
+        int[] links = new int[2 * n];
+        Arrays.fill(links, -1);
+        int[] degree = new int[n];
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+        for (long key : edges) {
+            int edge = (int) key;
+            int a = edge / k;
+            int b = lists.get(a, edge % k);
+            if (degree[a] == 2 || degree[b] == 2) {
+                continue;
+            }
+            int rootA = root(parent, a);
+            int rootB = root(parent, b);
+            if (rootA == rootB) {
+                continue;
+            }
+            parent[rootA] = rootB;
+            links[2 * a + degree[a]++] = b;
+            links[2 * b + degree[b]++] = a;
+        }
+        int[] tour = new int[n];
+        boolean[] visited = new boolean[n];
+        int length = 0;
+        for (int start : hilbert(distances.cities())) {
+            if (visited[start] || degree[start] == 2) {
+                continue;
+            }
+            // walk the path from this end to the other
+            int previous = -1;
+            for (int city = start; city >= 0; ) {
+                tour[length++] = city;
+                visited[city] = true;
+                int next = links[2 * city] != previous ? links[2 * city] : links[2 * city + 1];
+                previous = city;
+                city = next;
+            }
+        }
+        return tour;
+    }
+
+    private static boolean inList(NeighbourLists lists, int city, int other) {
+        for (int rank = 0; rank < lists.k(); rank++) {
+            if (lists.get(city, rank) == other) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int root(int[] parent, int city) {
+        while (parent[city] != city) {
+            parent[city] = parent[parent[city]];
+            city = parent[city];
+        }
+        return city;
+    }
+}
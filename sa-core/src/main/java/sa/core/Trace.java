@@ -0,0 +1,173 @@
+package sa.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Per temperature step record of one chain: temperature, current and best cost, acceptance
+ * rate, move counters and the time spent communicating since the previous step.
+ * <p>
+ * Every step is committed as a JFR {@code sa.Step} event, and every exchange timed with
+ * {@link #communication} as an {@code sa.Communication} event; both cost next to nothing
+ * unless a recording enables them. With a trace file the steps are also appended, buffered,
+ * as CSV when the name ends in .csv and otherwise as fixed-size big-endian binary records:
+ * step (long), temperature, current, best, acceptance (doubles), proposed, accepted,
+ * improving and communication nanoseconds (longs).
+ */
+public final class Trace implements Closeable {
+    private static final String CSV_HEADER = "step,temperature,current,best,acceptance,proposed,accepted,improving,comm_ns";
+
+    private final int chain;
+    private final DataOutputStream binary;
+    private final StringBuilder csvLine;
+    private final long startNanos = System.nanoTime();
+    private long step;
+    private long communicationNanos;
+    private long totalCommunicationNanos;
+    private long proposed;
+    private long accepted;
+    private long improving;
+
+    private Trace(int chain, DataOutputStream binary, boolean csv) {
+        this.chain = chain;
+        this.binary = binary;
+        this.csvLine = csv ? new StringBuilder() : null;
+    }
+
+    /**
+     * @param path  trace file, or null or empty for JFR events only
+     * @param chain chain id, inserted into the file name before its extension when not negative
+     */
+    public static Trace open(String path, int chain) {
+        if (path == null || path.isEmpty()) {
+            return new Trace(chain, null, false);
+        }
+        path = perChain(path, chain);
+        boolean csv = path.endsWith(".csv");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+            if (csv) {
+                out.writeBytes(CSV_HEADER + "\n");
+            }
+            return new Trace(chain, out, csv);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open trace " + path, e);
+        }
+    }
+
+    /**
+     * @return the path with the chain id inserted before its extension, unchanged for a negative chain
+     */
+    static String perChain(String path, int chain) {
+        if (chain < 0) {
+            return path;
+        }
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) + "-" + chain + path.substring(dot) : path + "-" + chain;
+    }
+
+    /**
+     * Record a step of an annealer, after {@link Annealer#step}.
+     */
+    public void step(double temperature, Annealer annealer) {
+        step(temperature, annealer.cost(), annealer.bestCost(), annealer.acceptanceRate(),
+                annealer.proposed(), annealer.accepted(), annealer.improving());
+    }
+
+    /**
+     * Record a step from explicit values, for drivers that only see their chains' results.
+     *
+     * @param proposed  moves proposed so far, like the other counters cumulative
+     */
+    public void step(double temperature, double current, double best, double acceptance,
+                     long proposed, long accepted, long improving) {
+        step++;
+        this.proposed = proposed;
+        this.accepted = accepted;
+        this.improving = improving;
+        StepEvent event = new StepEvent();
+        if (event.shouldCommit()) {
+            event.chain = chain;
+            event.step = step;
+            event.temperature = temperature;
+            event.current = current;
+            event.best = best;
+            event.acceptance = acceptance;
+            event.proposed = proposed;
+            event.accepted = accepted;
+            event.improving = improving;
+            event.communication = communicationNanos;
+            event.commit();
+        }
+        if (binary != null) {
+            try {
+                if (csvLine != null) {
+                    csvLine.setLength(0);
+                    csvLine.append(step).append(',').append(temperature).append(',').append(current).append(',')
+                            .append(best).append(',').append(acceptance).append(',').append(proposed).append(',')
+                            .append(accepted).append(',').append(improving).append(',').append(communicationNanos)
+                            .append('\n');
+                    binary.writeBytes(csvLine.toString());
+                } else {
+                    binary.writeLong(step);
+                    binary.writeDouble(temperature);
+                    binary.writeDouble(current);
+                    binary.writeDouble(best);
+                    binary.writeDouble(acceptance);
+                    binary.writeLong(proposed);
+                    binary.writeLong(accepted);
+                    binary.writeLong(improving);
+                    binary.writeLong(communicationNanos);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        communicationNanos = 0;
+    }
+
+    /**
+     * Account an exchange that started at the given System.nanoTime to the next step record.
+     *
+     * @param operation name such as "Bcast" or "collect"
+     * @return its duration in nanoseconds
+     */
+    public long communication(String operation, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        communicationNanos += nanos;
+        totalCommunicationNanos += nanos;
+        CommunicationEvent event = new CommunicationEvent();
+        if (event.shouldCommit()) {
+            event.chain = chain;
+            event.operation = operation;
+            event.nanos = nanos;
+            event.commit();
+        }
+        return nanos;
+    }
+
+    /**
+     * @return one line with the move counters, moves per second and communication time so far
+     */
+    public String summary() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return "steps=" + step + " proposed=" + proposed + " accepted=" + accepted + " improving=" + improving
+                + " moves/s=" + (long) (proposed / Math.max(seconds, 1e-9))
+                + " communication(ms)=" + totalCommunicationNanos / 1_000_000;
+    }
+
+    @Override
+    public void close() {
+        if (binary != null) {
+            try {
+                binary.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
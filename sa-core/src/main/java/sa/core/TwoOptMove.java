@@ -0,0 +1,86 @@
+package sa.core;
+
+/**
+ * 2-opt move: reverse a segment of the tour so that a city becomes adjacent to one of
+ * its nearest neighbours.
+ * <p>
+ * A proposal picks a random city a and a random entry b of its neighbour list, then the
+ * segment between them is chosen so the reversal creates the edge (a, b). Only the two
+ * edges at the segment ends change, so the cost change is O(1). The tour is an open path,
+ * where the complement of a segment is not itself a segment, so the reversal always
+ * works on the segment between the two cities.
+ */
+public final class TwoOptMove implements Move {
+    private final DistanceStore distances;
+    private final NeighbourLists neighbours;
+    private int[] tour;
+    // position of every city in the tour
+    private int[] position;
+    private int from;
+    private int to;
+
+    public TwoOptMove(DistanceStore distances, NeighbourLists neighbours) {
+        this.distances = distances;
+        this.neighbours = neighbours;
+    }
+
+    @Override
+    public void reset(int[] tour) {
+        this.tour = tour;
+        if (position == null || position.length != tour.length) {
+            position = new int[tour.length];
+        }
+        for (int i = 0; i < tour.length; i++) {
+            position[tour[i]] = i;
+        }
+    }
+
+    @Override
+    public double propose(Rng rand) {
+        int city = rand.nextInt(tour.length);
+        if (neighbours.k() == 0) {
+            from = to = position[city];
+            return 0;
+        }
+        int neighbour = neighbours.get(city, rand.nextInt(neighbours.k()));
+        int i = position[city];
+        int j = position[neighbour];
+        if (i < j) {
+            // reversing (i, j] puts the neighbour right after the city
+            from = i + 1;
+            to = j;
+        } else {
+            // reversing [j, i) puts the neighbour right before the city
+            from = j;
+            to = i - 1;
+        }
+        return delta(from, to);
+    }
+
+    @Override
+    public void apply() {
+        for (int i = from, j = to; i < j; i++, j--) {
+            int temp = tour[i];
+            tour[i] = tour[j];
+            tour[j] = temp;
+            position[tour[i]] = i;
+            position[tour[j]] = j;
+        }
+    }
+
+    /**
+     * @return cost change of reversing the tour between positions i and j inclusive
+     */
+    double delta(int i, int j) {
+        double delta = 0;
+        if (i > 0) {
+            int before = tour[i - 1];
+            delta += distances.distance(before, tour[j]) - distances.distance(before, tour[i]);
+        }
+        if (j < tour.length - 1) {
+            int after = tour[j + 1];
+            delta += distances.distance(tour[i], after) - distances.distance(tour[j], after);
+        }
+        return delta;
+    }
+}
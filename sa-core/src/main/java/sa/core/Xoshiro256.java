@@ -0,0 +1,113 @@
+package sa.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * xoshiro256** generator: 256 bits of state, period 2^256 - 1, a few shifts and rotates per
+ * number and no synchronisation, so every chain owns one without contention.
+ * <p>
+ * {@link #jump} advances the state by 2^128 numbers, which splits one seeded sequence into
+ * 2^128 streams that cannot overlap in any feasible run; {@link Rng#stream} hands out those
+ * streams by index. Seeds are expanded into the state with SplitMix64, as the authors of
+ * xoshiro recommend, so that nearby seeds give unrelated states.
+ */
+final class Xoshiro256 implements Rng {
+    private static final long[] JUMP = {
+            0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    Xoshiro256(long seed) {
+        long z = seed;
+        s0 = splitMix(z += 0x9e3779b97f4a7c15L);
+        s1 = splitMix(z += 0x9e3779b97f4a7c15L);
+        s2 = splitMix(z += 0x9e3779b97f4a7c15L);
+        s3 = splitMix(z + 0x9e3779b97f4a7c15L);
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Lemire's multiply-shift with rejection, unbiased and without a division in the common case.
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        long m = (nextLong() >>> 32) * bound;
+        long low = m & 0xFFFFFFFFL;
+        if (low < bound) {
+            long threshold = (0x100000000L - bound) % bound;
+            while (low < threshold) {
+                m = (nextLong() >>> 32) * bound;
+                low = m & 0xFFFFFFFFL;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Advance by 2^128 numbers.
+     */
+    void jump() {
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        for (long word : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((word & (1L << bit)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    @Override
+    public byte[] state() {
+        return ByteBuffer.allocate(32).putLong(s0).putLong(s1).putLong(s2).putLong(s3).array();
+    }
+
+    @Override
+    public void restore(byte[] state) {
+        if (state.length != 32) {
+            throw new IllegalArgumentException("Not a xoshiro256 state: " + state.length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(state);
+        s0 = buffer.getLong();
+        s1 = buffer.getLong();
+        s2 = buffer.getLong();
+        s3 = buffer.getLong();
+    }
+}
@@ -0,0 +1,48 @@
+package sa.local;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Best-so-far tour shared by all chains, updated lock-free.
+ * <p>
+ * Every snapshot is immutable, so readers never see a half-copied tour; a chain only
+ * copies its tour when it beats the published cost.
+ */
+public final class BestTour {
+    private final AtomicReference<Snapshot> best = new AtomicReference<>(new Snapshot(Double.MAX_VALUE, null));
+
+    /**
+     * Publish the tour if it is better than the current best.
+     *
+     * @return true when the tour became the new best
+     */
+    boolean offer(double cost, int[] tour) {
+        Snapshot current = best.get();
+        if (cost >= current.cost) {
+            return false;
+        }
+        Snapshot candidate = new Snapshot(cost, tour.clone());
+        while (!best.compareAndSet(current, candidate)) {
+            current = best.get();
+            if (cost >= current.cost) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Snapshot get() {
+        return best.get();
+    }
+
+    public static final class Snapshot {
+        public final double cost;
+        // null until the first offer, never modified afterwards
+        public final int[] tour;
+
+        Snapshot(double cost, int[] tour) {
+            this.cost = cost;
+            this.tour = tour;
+        }
+    }
+}
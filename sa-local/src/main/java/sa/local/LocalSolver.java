@@ -0,0 +1,273 @@
+package sa.local;
+
+import sa.core.Annealer;
+import sa.core.Checkpoint;
+import sa.core.Checkpointer;
+import sa.core.CityLoader;
+import sa.core.CityTable;
+import sa.core.CoolingSchedule;
+import sa.core.CoolingSchedules;
+import sa.core.Decomposition;
+import sa.core.DistanceStore;
+import sa.core.Moves;
+import sa.core.Options;
+import sa.core.Rng;
+import sa.core.Tours;
+import sa.core.Trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs independent annealing chains on the cores of one machine, without a cluster framework.
+ * <p>
+ * The chains publish their best tour to a shared {@link BestTour} after every temperature
+ * step, and every restart interval a chain whose current tour is worse than the shared
+ * best continues from the shared best.
+ * <p>
+ * Large instances can be split into spatial regions instead, see {@link Decomposition}:
+ * every region is annealed by its own chain and the region tours are stitched together.
+ */
+public class LocalSolver {
+    private static final double INITIAL_TEMPERATURE = 1000;
+    private static final double COOLING_RATE = 0.003;
+    private static final int NUM_NEIGHBORS = 100;
+    private static final int RESTART_INTERVAL = 50;
+    // positions on each side of a region join searched by the boundary repair
+    private static final int REPAIR_WINDOW = 50;
+    // temperature steps between checkpoints of a chain
+    private static final int CHECKPOINT_INTERVAL = 100;
+    // temperature steps between progress reports of a chain
+    private static final int PROGRESS_INTERVAL = 100;
+
+    private final DistanceStore distances;
+    private final Options options;
+    // null when nobody listens
+    private final Progress progress;
+    private final BestTour best = new BestTour();
+    // temperature steps run by all chains
+    private final LongAdder steps = new LongAdder();
+
+    /**
+     * Receives the shared best cost every few temperature steps of every chain.
+     */
+    public interface Progress {
+        void step(int chain, int step, double temperature, double bestCost);
+    }
+
+    public LocalSolver(DistanceStore distances, Options options) {
+        this(distances, options, null);
+    }
+
+    /**
+     * @param progress called from the chains' threads, or null
+     */
+    public LocalSolver(DistanceStore distances, Options options, Progress progress) {
+        this.distances = distances;
+        this.options = options;
+        this.progress = progress;
+    }
+
+    /**
+     * @param args [0] cities.txt, then key=value options: chains, move=swap|2opt, neighbours,
+     *             temperature, rate, moves (per step), initial=random|hilbert|nearest|greedy (initial tour,
+     *             a constructed one starts at a matching lower temperature), restart (steps between restarts), seed (master seed
+     *             of the chains' random streams),
+     *             region (cities per region, 0 to anneal the whole tour), window (boundary repair positions),
+     *             cooling=geometric|lundy-mees|acceptance, stagnation (steps without a new best before
+     *             reheating or stopping, 0 for never), reheats, reheat (temperature factor),
+     *             trace (per chain step trace file, .csv for text, otherwise binary),
+     *             checkpoint (checkpoint file of the shared best, every chain's own goes next to it),
+     *             checkpoint-steps (steps between checkpoints),
+     *             resume (true to continue every chain from its checkpoint),
+     *             progress-steps (steps between progress reports to a {@link Progress} listener)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        long startTime = System.currentTimeMillis();
+        File file = new File(args[0]);
+        Options options = Options.parse(args, 1);
+        DistanceStore distances = DistanceStore.create(CityLoader.load(file));
+        System.out.println(">>> Read Cities size=" + distances.size() + " on=" + file.getAbsolutePath());
+        BestTour.Snapshot result = new LocalSolver(distances, options).solve();
+        System.out.println(">>> Best cost: " + result.cost);
+        System.out.println(">>> Best solution: " + Arrays.toString(result.tour));
+        System.out.println(">>> Time(ms): " + (System.currentTimeMillis() - startTime));
+    }
+
+    /**
+     * @return best tour over all chains
+     */
+    public BestTour.Snapshot solve() throws IOException, InterruptedException, ExecutionException {
+        int regionSize = options.getInt("region", 0);
+        if (regionSize > 0 && distances.size() > regionSize) {
+            return solveRegions(regionSize);
+        }
+        int chains = options.getInt("chains", Runtime.getRuntime().availableProcessors());
+        long seed = options.getLong("seed", 534);
+        String checkpoint = options.get("checkpoint", null);
+        if (checkpoint != null && options.getBoolean("resume", false)) {
+            // the chains restart from the shared best, so it is part of their state
+            Checkpoint shared = Checkpoint.read(new File(checkpoint));
+            best.offer(shared.bestCost, shared.bestTour);
+        }
+        ForkJoinPool pool = new ForkJoinPool(chains);
+        Checkpointer checkpointer = new Checkpointer();
+        try {
+            List<Callable<Double>> tasks = new ArrayList<>(chains);
+            for (int i = 0; i < chains; i++) {
+                int chain = i;
+                tasks.add(() -> runChain(chain, Rng.stream(seed, chain), checkpointer));
+            }
+            for (Future<Double> chain : pool.invokeAll(tasks)) {
+                chain.get();
+            }
+        } finally {
+            pool.shutdown();
+            checkpointer.close();
+        }
+        reportSteps(chains);
+        return best.get();
+    }
+
+    /**
+     * Anneal one chain, checkpointing it and the shared best it restarts from every few steps
+     * when a checkpoint file is given. A resumed chain continues bit for bit, but the restarts
+     * from the shared best make runs of several chains depend on their timing anyway.
+     */
+    private double runChain(int chain, Rng rng, Checkpointer checkpointer) throws IOException {
+        Annealer annealer = new Annealer(distances,
+                Moves.create(options.get("move", Moves.SWAP), distances, options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS)),
+                rng);
+        annealer.reset(initialTour(distances, rng));
+        CoolingSchedule cooling = cooling();
+        int moves = options.getInt("moves", NUM_NEIGHBORS);
+        int restart = options.getInt("restart", RESTART_INTERVAL);
+        double temp = cooling.initialTemperature();
+        String checkpoint = options.get("checkpoint", null);
+        int checkpointSteps = options.getInt("checkpoint-steps", CHECKPOINT_INTERVAL);
+        int progressSteps = options.getInt("progress-steps", PROGRESS_INTERVAL);
+        int step = 1;
+        if (checkpoint != null && options.getBoolean("resume", false)) {
+            Checkpoint saved = Checkpoint.read(Checkpoint.file(checkpoint, chain));
+            annealer.restore(saved, cooling);
+            temp = saved.temperature;
+            step = (int) saved.extra[0];
+            best.offer(annealer.bestCost(), annealer.bestTour());
+            System.out.println(">>> Chain " + chain + " resumed at step " + step + " tmp=" + temp);
+        }
+        try (Trace trace = Trace.open(options.get("trace", null), chain)) {
+            for (; !cooling.isFrozen(temp); step++) {
+                annealer.step(temp, moves);
+                trace.step(temp, annealer);
+                cooling.observe(annealer.acceptanceRate(), annealer.bestCost());
+                best.offer(annealer.bestCost(), annealer.bestTour());
+                if (step % restart == 0) {
+                    BestTour.Snapshot shared = best.get();
+                    if (shared.cost < annealer.cost()) {
+                        annealer.reset(shared.tour);
+                    }
+                }
+                if (progress != null && step % progressSteps == 0) {
+                    progress.step(chain, step, temp, best.get().cost);
+                }
+                temp = cooling.next(temp);
+                if (checkpoint != null && step % checkpointSteps == 0) {
+                    checkpointer.submit(Checkpoint.file(checkpoint, chain), annealer.checkpoint(chain, temp, cooling, step + 1));
+                    BestTour.Snapshot shared = best.get();
+                    checkpointer.submit(new File(checkpoint),
+                            Checkpoint.ofDriver(temp, shared.cost, shared.tour, shared.cost, shared.tour, null, null));
+                }
+            }
+            annealer.verify();
+            best.offer(annealer.bestCost(), annealer.bestTour());
+            steps.add(annealer.steps());
+            System.out.println(">>> Chain " + chain + ": " + trace.summary());
+        }
+        return annealer.bestCost();
+    }
+
+    /**
+     * Anneal every region with one chain on the pool, then stitch the region tours and repair
+     * them around the joins.
+     */
+    private BestTour.Snapshot solveRegions(int regionSize) throws InterruptedException, ExecutionException {
+        Decomposition decomposition = Decomposition.of(distances.cities(), regionSize);
+        int threads = options.getInt("chains", Runtime.getRuntime().availableProcessors());
+        long seed = options.getLong("seed", 534);
+        int[][] subTours = new int[decomposition.regions()][];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<int[]>> tasks = new ArrayList<>(subTours.length);
+            for (int r = 0; r < subTours.length; r++) {
+                int region = r;
+                tasks.add(() -> annealRegion(region, decomposition.region(region), Rng.stream(seed, region)));
+            }
+            List<Future<int[]>> results = pool.invokeAll(tasks);
+            for (int r = 0; r < subTours.length; r++) {
+                subTours[r] = results.get(r).get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        reportSteps(subTours.length);
+        int[] tour = decomposition.stitch(distances, subTours);
+        double stitched = distances.tourCost(tour);
+        int repairs = decomposition.repair(distances, tour, options.getInt("window", REPAIR_WINDOW));
+        double cost = distances.tourCost(tour);
+        System.out.println(">>> " + subTours.length + " regions stitched cost=" + stitched
+                + ", " + repairs + " boundary repairs cost=" + cost);
+        best.offer(cost, tour);
+        return best.get();
+    }
+
+    /**
+     * @return best open tour of the region, in the region's local city indices
+     */
+    private int[] annealRegion(int region, CityTable cities, Rng rng) {
+        DistanceStore regionDistances = DistanceStore.create(cities);
+        Annealer annealer = new Annealer(regionDistances,
+                Moves.create(options.get("move", Moves.SWAP), regionDistances, options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS)),
+                rng);
+        annealer.reset(initialTour(regionDistances, rng));
+        try (Trace trace = Trace.open(options.get("trace", null), region)) {
+            annealer.run(cooling(), options.getInt("moves", NUM_NEIGHBORS), trace);
+        }
+        steps.add(annealer.steps());
+        return annealer.bestTour();
+    }
+
+    private int[] initialTour(DistanceStore distances, Rng rng) {
+        return Tours.create(options.get("initial", Tours.RANDOM), distances,
+                options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS), rng);
+    }
+
+    /**
+     * @return the temperature option, lowered to match a constructed initial tour
+     */
+    private double initialTemperature() {
+        return Tours.temperature(options.get("initial", Tours.RANDOM), options.getDouble("temperature", INITIAL_TEMPERATURE));
+    }
+
+    private CoolingSchedule cooling() {
+        return CoolingSchedules.create(options, initialTemperature(), options.getDouble("rate", COOLING_RATE));
+    }
+
+    /**
+     * Print the steps run against what the fixed geometric schedule from the chains' starting
+     * temperature would have run, so moves saved only count steps the schedule itself skipped.
+     */
+    private void reportSteps(int chains) {
+        long fixed = chains * CoolingSchedules.fixedSteps(initialTemperature(), options.getDouble("rate", COOLING_RATE));
+        long run = steps.sum();
+        System.out.println(">>> Steps run: " + run + " of " + fixed + " fixed, moves saved: "
+                + (fixed - run) * options.getInt("moves", NUM_NEIGHBORS));
+    }
+}
@@ -0,0 +1,320 @@
+package sa.local;
+
+import sa.core.CityLoader;
+import sa.core.DistanceStore;
+import sa.core.Options;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived solver that keeps one JVM, and its compiled annealing loop, warm across many
+ * instances instead of starting a JVM and a cluster framework per run.
+ * <p>
+ * A job is one line: a cities file followed by {@link LocalSolver} key=value options. Jobs
+ * come in over a loopback socket, one per line, with the replies streamed back on the same
+ * connection, or as "*.job" files in a spool directory, whose replies go to a ".out" file
+ * next to them. A spool job should be written under another name and renamed to ".job", so
+ * it is never claimed half-written. Replies are lines of the form
+ * <pre>
+ * queued 7 cities.txt
+ * progress 7 chain=0 step=100 tmp=740.5 best=1.43E7
+ * done 7 cost=1.35E7 ms=612 tour=[80, 53, ...]
+ * error 7 message
+ * rejected 8 cities.txt queue full
+ * </pre>
+ * Jobs run on a fixed pool of workers behind a bounded queue, one chain each unless the job
+ * asks for more, so a batch keeps every core busy without oversubscribing them. Distance
+ * stores are shared by the jobs of the same file: the most recently used ones stay loaded
+ * until the file changes.
+ */
+public class SolverDaemon {
+    private static final int PORT = 7534;
+    private static final int QUEUE_SIZE = 1000;
+    private static final int CACHE_SIZE = 16;
+    private static final long SPOOL_POLL_MS = 1000;
+
+    private final ThreadPoolExecutor workers;
+    // distance stores by file, path and modification time, least recently used first
+    private final Map<String, FutureTask<DistanceStore>> cache;
+    private final AtomicLong jobIds = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * How a submitted job ended.
+     */
+    enum Outcome {
+        DONE, FAILED, REJECTED
+    }
+
+    public SolverDaemon(int threads, int queueSize, int cacheSize) {
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize));
+        cache = new LinkedHashMap<String, FutureTask<DistanceStore>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FutureTask<DistanceStore>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param args key=value options: port (loopback port, 0 for no socket), spool (directory
+     *             polled for *.job files), workers (jobs solved at once), queue (jobs waiting
+     *             before new ones are rejected), cache (distance stores kept loaded). A
+     *             connection can also send "status" for the queue and cache counters. Defaults for
+     *             the jobs' own options are read from sa.* system properties as usual.
+     */
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args, 0);
+        SolverDaemon daemon = new SolverDaemon(
+                options.getInt("workers", Runtime.getRuntime().availableProcessors()),
+                options.getInt("queue", QUEUE_SIZE), options.getInt("cache", CACHE_SIZE));
+        String spool = options.get("spool", null);
+        int port = options.getInt("port", PORT);
+        if (port <= 0 && spool == null) {
+            System.out.println(">>> Nothing to serve: port=0 disables the socket, give spool=<dir>");
+            return;
+        }
+        if (spool != null) {
+            System.out.println(">>> Polling spool " + new File(spool).getAbsolutePath());
+            if (port <= 0) {
+                daemon.pollSpool(new File(spool));
+                return;
+            }
+            Thread poller = new Thread(() -> daemon.pollSpool(new File(spool)), "spool");
+            poller.setDaemon(true);
+            poller.start();
+        }
+        daemon.serve(port);
+    }
+
+    /**
+     * Accept connections on the loopback interface, one reader thread per connection.
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println(">>> Listening on " + server.getLocalSocketAddress() + " with "
+                    + workers.getMaximumPoolSize() + " workers");
+            while (true) {
+                Socket socket = server.accept();
+                Thread client = new Thread(() -> handle(socket), "client-" + socket.getPort());
+                client.setDaemon(true);
+                client.start();
+            }
+        }
+    }
+
+    /**
+     * Read job lines until the client closes its side, then keep the connection open until its
+     * jobs have sent their last reply. Replies of all jobs of the connection share its writer;
+     * jobs still running when the client goes away finish unheard.
+     */
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            Consumer<String> reply = line -> {
+                synchronized (out) {
+                    out.println(line);
+                }
+            };
+            // one party for the reader, one more per job of the connection
+            Phaser jobs = new Phaser(1);
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("status")) {
+                    reply.accept(status());
+                } else {
+                    jobs.register();
+                    submit(line, reply, outcome -> jobs.arriveAndDeregister());
+                }
+            }
+            jobs.arriveAndAwaitAdvance();
+        } catch (IOException e) {
+            System.out.println(">>> Connection closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Claim the spool's job files in name order while the queue has room; a claimed job is
+     * renamed to ".running", then to ".done" or ".failed". A job that still finds the queue
+     * full is renamed back to ".job" for the next scan.
+     */
+    private void pollSpool(File spool) {
+        while (true) {
+            File[] jobs = spool.listFiles((dir, name) -> name.endsWith(".job"));
+            if (jobs != null) {
+                Arrays.sort(jobs);
+                for (File job : jobs) {
+                    if (workers.getQueue().remainingCapacity() == 0) {
+                        break;
+                    }
+                    claim(job);
+                }
+            }
+            try {
+                Thread.sleep(SPOOL_POLL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void claim(File job) {
+        String base = job.getPath().substring(0, job.getPath().length() - ".job".length());
+        File running = new File(base + ".running");
+        if (!job.renameTo(running)) {
+            return;
+        }
+        try {
+            String line = new String(Files.readAllBytes(running.toPath()), StandardCharsets.UTF_8).trim();
+            Writer writer = new FileWriter(base + ".out", StandardCharsets.UTF_8);
+            PrintWriter out = new PrintWriter(writer, true);
+            submit(line, out::println, outcome -> {
+                out.close();
+                if (outcome == Outcome.REJECTED) {
+                    new File(base + ".out").delete();
+                    running.renameTo(job);
+                } else {
+                    running.renameTo(new File(base + (outcome == Outcome.DONE ? ".done" : ".failed")));
+                }
+            });
+        } catch (IOException e) {
+            System.out.println(">>> Could not read job " + running + ": " + e.getMessage());
+            running.renameTo(new File(base + ".failed"));
+        }
+    }
+
+    /**
+     * Queue a job line, or reject it when the queue is full.
+     *
+     * @param finished called with the job's outcome once its last reply is sent, or null
+     */
+    void submit(String line, Consumer<String> reply, Consumer<Outcome> finished) {
+        String[] words = line.split("\\s+");
+        // one chain per job unless it asks for more, the pool runs the jobs in parallel
+        String[] args = new String[words.length];
+        args[0] = "chains=1";
+        System.arraycopy(words, 1, args, 1, words.length - 1);
+        long id = jobIds.incrementAndGet();
+        Options options;
+        try {
+            options = Options.parse(args, 0);
+        } catch (IllegalArgumentException e) {
+            reply.accept("error " + id + " " + e.getMessage());
+            finish(finished, Outcome.FAILED);
+            return;
+        }
+        File file = new File(words[0]);
+        // the job waits until its queued line is sent, so its replies stay in order
+        CountDownLatch queued = new CountDownLatch(1);
+        try {
+            workers.execute(() -> finish(finished, solve(id, file, options, reply, queued) ? Outcome.DONE : Outcome.FAILED));
+            reply.accept("queued " + id + " " + file);
+            queued.countDown();
+        } catch (RejectedExecutionException e) {
+            reply.accept("rejected " + id + " " + file + " queue full");
+            finish(finished, Outcome.REJECTED);
+        }
+    }
+
+    private static void finish(Consumer<Outcome> finished, Outcome outcome) {
+        if (finished != null) {
+            finished.accept(outcome);
+        }
+    }
+
+    private boolean solve(long id, File file, Options options, Consumer<String> reply, CountDownLatch queued) {
+        long startTime = System.currentTimeMillis();
+        try {
+            queued.await();
+            DistanceStore distances = distances(file);
+            LocalSolver.Progress progress = (chain, step, temperature, bestCost) -> reply.accept(
+                    "progress " + id + " chain=" + chain + " step=" + step + " tmp=" + temperature + " best=" + bestCost);
+            BestTour.Snapshot result = new LocalSolver(distances, options, progress).solve();
+            reply.accept("done " + id + " cost=" + result.cost + " ms=" + (System.currentTimeMillis() - startTime)
+                    + " tour=" + Arrays.toString(result.tour));
+            done.incrementAndGet();
+            return true;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            reply.accept("error " + id + " " + cause);
+            failed.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * @return the file's distance store, loaded once by the first job that needs it while
+     * later jobs of the same file wait for that load
+     */
+    private DistanceStore distances(File file) throws IOException, InterruptedException {
+        String key = file.getCanonicalPath() + "@" + file.lastModified();
+        FutureTask<DistanceStore> load;
+        boolean loading = false;
+        synchronized (cache) {
+            load = cache.get(key);
+            if (load == null) {
+                load = new FutureTask<>(() -> DistanceStore.create(CityLoader.load(file)));
+                cache.put(key, load);
+                loading = true;
+            }
+        }
+        (loading ? cacheMisses : cacheHits).incrementAndGet();
+        if (loading) {
+            load.run();
+        }
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            synchronized (cache) {
+                cache.remove(key, load);
+            }
+            throw new IOException("Could not load " + file + ": " + e.getCause(), e.getCause());
+        }
+    }
+
+    String status() {
+        int cached;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        return "status queued=" + workers.getQueue().size() + " running=" + workers.getActiveCount()
+                + " done=" + done.get() + " failed=" + failed.get() + " cached=" + cached
+                + " hits=" + cacheHits.get() + " misses=" + cacheMisses.get();
+    }
+}
@@ -1,10 +1,11 @@
 package sa;
 
+import sa.core.Rng;
+
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Random;
 import java.util.Set;
 
 public class RandomLongGenerator {
@@ -13,7 +14,7 @@ public class RandomLongGenerator {
     private static String OUTPUT_PATH = "./random_seed.txt";
 
     public static void main(String[] args) {
-        Random rand = new Random(534);
+        Rng rand = Rng.stream(534, 0);
         File file = new File(OUTPUT_PATH);
         try (FileWriter fw = new FileWriter(file)) {
             System.out.println("output path: " + file.getAbsolutePath());
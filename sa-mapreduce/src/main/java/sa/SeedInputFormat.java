@@ -0,0 +1,176 @@
+package sa;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the seeds themselves rather than the bytes of the seed file, so every group of
+ * {@link #SEEDS_PER_SPLIT} seeds gets its own map task. TextInputFormat puts the whole
+ * random_seed.txt in one split, which anneals every seed in a single mapper.
+ * <p>
+ * The seeds are read from the input paths on the client, one per line. When {@link #SEED_COUNT}
+ * is set no input is needed: the keys are then the stream indices 0 to count - 1, and every map
+ * anneals with its own independent stream of the {@link #MASTER_SEED master seed}.
+ */
+public class SeedInputFormat extends InputFormat<LongWritable, NullWritable> {
+    // seeds per map task
+    static final String SEEDS_PER_SPLIT = "sa.seeds.per.split";
+    // number of seeds to generate instead of reading the input paths
+    static final String SEED_COUNT = "sa.seeds.count";
+    // master seed of the streams
+    static final String MASTER_SEED = "sa.seed";
+    static final long DEFAULT_SEED = 534;
+
+    @Override
+    public List<InputSplit> getSplits(JobContext context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        long[] seeds = seeds(context);
+        int perSplit = Math.max(1, conf.getInt(SEEDS_PER_SPLIT, 1));
+        List<InputSplit> splits = new ArrayList<>();
+        for (int from = 0; from < seeds.length; from += perSplit) {
+            long[] group = new long[Math.min(perSplit, seeds.length - from)];
+            System.arraycopy(seeds, from, group, 0, group.length);
+            splits.add(new SeedSplit(group));
+        }
+        System.out.println(">>> " + seeds.length + " seeds in " + splits.size() + " splits");
+        return splits;
+    }
+
+    private static long[] seeds(JobContext context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        int count = conf.getInt(SEED_COUNT, 0);
+        if (count > 0) {
+            long[] streams = new long[count];
+            for (int i = 0; i < count; i++) {
+                streams[i] = i;
+            }
+            return streams;
+        }
+        List<Long> seeds = new ArrayList<>();
+        for (Path path : FileInputFormat.getInputPaths(context)) {
+            FileSystem fs = path.getFileSystem(conf);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fs.open(path), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        seeds.add(Long.parseLong(line.trim()));
+                    }
+                }
+            }
+        }
+        return seeds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public RecordReader<LongWritable, NullWritable> createRecordReader(InputSplit split, TaskAttemptContext context) {
+        return new SeedReader();
+    }
+
+    /**
+     * A group of seeds, carried in the split itself.
+     */
+    public static class SeedSplit extends InputSplit implements Writable {
+        private long[] seeds;
+
+        public SeedSplit() {
+        }
+
+        SeedSplit(long[] seeds) {
+            this.seeds = seeds;
+        }
+
+        long[] getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public long getLength() {
+            return seeds.length;
+        }
+
+        @Override
+        public String[] getLocations() {
+            // no data locality, any node can anneal any seed
+            return new String[0];
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(seeds.length);
+            for (long seed : seeds) {
+                out.writeLong(seed);
+            }
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            seeds = new long[in.readInt()];
+            for (int i = 0; i < seeds.length; i++) {
+                seeds[i] = in.readLong();
+            }
+        }
+    }
+
+    /**
+     * Emits every seed of a split as the key, with no value.
+     */
+    static class SeedReader extends RecordReader<LongWritable, NullWritable> {
+        private final LongWritable key = new LongWritable();
+        private long[] seeds;
+        private int next;
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) {
+            seeds = ((SeedSplit) split).getSeeds();
+            next = 0;
+        }
+
+        @Override
+        public boolean nextKeyValue() {
+            if (next == seeds.length) {
+                return false;
+            }
+            key.set(seeds[next++]);
+            return true;
+        }
+
+        @Override
+        public LongWritable getCurrentKey() {
+            return key;
+        }
+
+        @Override
+        public NullWritable getCurrentValue() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public float getProgress() {
+            return seeds.length == 0 ? 1 : (float) next / seeds.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,17 +1,33 @@
 package sa;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+import sa.core.Annealer;
+import sa.core.CityLoader;
+import sa.core.CityTable;
+import sa.core.CoolingSchedule;
+import sa.core.CoolingSchedules;
+import sa.core.DistanceStore;
+import sa.core.Moves;
+import sa.core.Options;
+import sa.core.Rng;
+import sa.core.Tours;
+import sa.core.Trace;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
@@ -20,156 +36,306 @@ public class SimulatedAnnealingTSP implements Serializable {
     private static final int NUM_NEIGHBORS = 100;
     private static final double INITIAL_TEMPERATURE = 1000;
     private static final double COOLING_RATE = 0.003;
-    private static List<int[]> cities;
+    // move operator, "swap" or "2opt"
+    static final String MOVE = "sa.move";
+    // candidate neighbours per city for the 2-opt move
+    static final String NEIGHBOURS = "sa.neighbours";
+    // number of best tours kept by the combiner and written by the reducer
+    static final String TOP_K = "sa.topk";
+    // number of chained rounds, each warm-starting from the best tour of the round before
+    static final String ROUNDS = "sa.rounds";
+    // starting temperature of a round relative to the round before
+    static final String ROUND_TEMPERATURE = "sa.round.temperature";
+    // stop when a round improves the best distance by less than this fraction
+    static final String MIN_IMPROVEMENT = "sa.min.improvement";
+    // set per round: starting temperature, and the output directory holding the tour to warm-start from
+    static final String TEMPERATURE = "sa.temperature";
+    static final String START_TOURS = "sa.start.tours";
+    // cooling schedule, "geometric", "lundy-mees" or "acceptance"
+    static final String COOLING = "sa.cooling";
+    // initial tour of the first round, "random", "hilbert", "nearest" or "greedy"
+    static final String INITIAL = "sa.initial";
+    // steps without a new best before reheating or stopping, 0 for never
+    static final String STAGNATION = "sa.stagnation";
+    // reheats before stopping, and the temperature factor of a reheat
+    static final String REHEATS = "sa.reheats";
+    static final String REHEAT = "sa.reheat";
+    // counter group of the steps run, the moves saved against the fixed schedule and the move counters
+    static final String COUNTERS = "SimulatedAnnealingTSP";
+    // seeds annealed concurrently inside one map task
+    static final String MAP_THREADS = "sa.map.threads";
+    // binary city file written by the driver and shipped through the distributed cache
+    static final String CITIES = "sa.cities";
+    // step trace file of every seed in the task's working directory, .csv for text, otherwise binary
+    static final String TRACE = "sa.trace";
+    // true to continue in the given output directory, skipping the rounds that completed
+    static final String RESUME = "sa.resume";
+    // written into a round's output directory once its job succeeded
+    static final String ROUND_DONE = "_round_done";
+    // distance store of the cached city file, built once per task JVM
+    private static DistanceStore taskDistances;
 
     /**
-     * @return list of cities with a pair of index
+     * @param args generic options such as -D sa.move=2opt, -D sa.topk=5, -D sa.rounds=4,
+     *             -D sa.seeds.per.split=4, -D sa.map.threads=4, -D sa.cooling=lundy-mees, -D sa.stagnation=200,
+     *             -D sa.initial=greedy
+     *             or -D sa.trace=steps.csv; -D sa.resume=true continues a run in its output directory,
+     *             then [0] seed file, ignored with -D sa.seeds.count=N [1] output [2] cities.txt or a TSPLIB .tsp file
      */
-    private static List<int[]> readCities(File file) {
-        // Create a list of cities and read cities from file
-        List<int[]> cities = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new FileInputStream(file))) {
-            while (scanner.hasNext()) {
-                String line = scanner.next();
-                if (!"".equals(line.trim())) {
-                    String[] lineArgs = line.split("=");
-                    String[] positions = lineArgs[1].split(",");
-                    cities.add(new int[]{Integer.parseInt(positions[0]), Integer.parseInt(positions[1])});
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        System.out.println(">>> Read Cities size=" + cities.size() + " on=" + file.getAbsolutePath());
-        return cities;
-    }
-
     public static void main(String[] args) throws Exception {
 	long startTime = System.currentTimeMillis();
+        Configuration conf = new Configuration();
+        args = new GenericOptionsParser(conf, args).getRemainingArgs();
         Path input = new Path(args[0]);
         String outputPath = args[1];
+        boolean resume = conf.getBoolean(RESUME, false);
         int count = 0;
-        while (new File(outputPath).exists()) {
+        while (!resume && new File(outputPath).exists()) {
             outputPath = args[1] + "-" + count++;
         }
-        Path output = new Path(outputPath);
         System.out.println("input=" + input.getName());
-        System.out.println("output=" + output.getName());
+        System.out.println("output=" + new Path(outputPath).getName());
         File file = new File(args[2]);
-        cities = readCities(file);
-        Configuration conf = new Configuration();
-        Job job = new Job(conf, "SimulatedAnnealingTSP");
-        job.setJarByClass(SimulatedAnnealingTSP.class);
-        job.setMapperClass(TSPMapper.class);
-        job.setReducerClass(TSPReducer.class);
-        job.setMapOutputKeyClass(Text.class);
-        job.setMapOutputValueClass(Text.class);
-        job.setOutputKeyClass(Text.class);
-        job.setOutputValueClass(Text.class);
-
-        job.setInputFormatClass(TextInputFormat.class);
-        TextInputFormat.addInputPath(job, input);
-//        FileInputFormat.setInputPaths(job, input);
-
-        job.setOutputFormatClass(TextOutputFormat.class);
-        TextOutputFormat.setOutputPath(job, output);
-//        FileOutputFormat.setOutputPath(job, output);
-	long endtime = System.currentTimeMillis();
+        Path cities = new Path(outputPath + "-cities.bin");
+        writeCities(conf, CityLoader.load(file), cities);
+        conf.set(CITIES, cities.toString());
+        int rounds = Math.max(1, conf.getInt(ROUNDS, 1));
+        double roundTemperature = Double.parseDouble(conf.get(ROUND_TEMPERATURE, "0.1"));
+        double minImprovement = Double.parseDouble(conf.get(MIN_IMPROVEMENT, "0"));
+        // a constructed initial tour starts at a matching lower temperature
+        double temperature = Tours.temperature(conf.get(INITIAL, Tours.RANDOM), INITIAL_TEMPERATURE);
+        TourWritable best = null;
+        Path previous = null;
+        boolean succeeded = true;
+        for (int round = 0; round < rounds; round++) {
+            Path output = rounds == 1 ? new Path(outputPath) : new Path(outputPath, "round-" + round);
+            // every round only depends on the tours of the rounds before, so completed rounds are checkpoints
+            FileSystem fs = output.getFileSystem(conf);
+            if (resume && fs.exists(new Path(output, ROUND_DONE))) {
+                System.out.println(">>> Round " + round + " resumed from " + output);
+            } else {
+                if (resume) {
+                    // part files of the tasks that finished before the failure
+                    fs.delete(output, true);
+                }
+                succeeded = runRound(conf, input, output, temperature, previous, round);
+                if (!succeeded) {
+                    break;
+                }
+                fs.create(new Path(output, ROUND_DONE), true).close();
+            }
+            TourWritable roundBest = TourFiles.readBest(conf, output);
+            System.out.println(">>> Round " + round + " temperature=" + temperature
+                    + " best distance=" + (roundBest == null ? "none" : roundBest.getDistance()));
+            boolean improved = best == null
+                    || roundBest != null && roundBest.getDistance() < best.getDistance() * (1 - minImprovement);
+            if (roundBest != null && (best == null || roundBest.getDistance() < best.getDistance())) {
+                best = roundBest;
+                previous = output;
+            }
+            if (!improved) {
+                System.out.println(">>> Round " + round + " did not improve, stopping");
+                break;
+            }
+            temperature *= roundTemperature;
+        }
+        if (best != null) {
+            System.out.println(">>> Best distance: " + best.getDistance());
+        }
+	long endTime = System.currentTimeMillis();
 	long elapsedTime = endTime - startTime;
 	double elapsedseconds =elapsedTime / 1000.0;
 	System.out.println("Elapsed time: " + elapsedseconds);
-        System.exit(job.waitForCompletion(true) ? 0 : 1);
+        System.exit(succeeded ? 0 : 1);
     }
 
-    public static class TSPMapper extends Mapper<Object, Text, Text, Text> {
-        private final Text keyOut = new Text("0");
-        private final Text valueOut = new Text();
+    /**
+     * Convert the parsed cities once into the binary form the tasks memory-map.
+     */
+    private static void writeCities(Configuration conf, CityTable cities, Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(conf);
+        try (FSDataOutputStream out = fs.create(path, true)) {
+            cities.writeBinary(out);
+        }
+        System.out.println(">>> Wrote " + cities.size() + " cities to " + fs.makeQualified(path));
+    }
 
-        @Override
-        public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
-            long seed = Long.parseLong(value.toString());
-            Random random = new Random(seed);
-            System.out.println("Random seed=" + seed);
-            // Generate a random initial tour
-            int[] currentTour = generateInitialTour(random);
-            // Perform Simulated Annealing
-            double currentDistance = calculateTourDistance(currentTour);
-            double temperature = INITIAL_TEMPERATURE;
-            while (temperature > 1) {
-                for (int i = 0; i < NUM_NEIGHBORS; i++) {
-                    int[] newTour = generateNeighborTour(currentTour, random);
-                    double newDistance = calculateTourDistance(newTour);
-                    if (acceptMove(currentDistance, newDistance, temperature, random)) {
-                        currentTour = newTour;
-                        currentDistance = newDistance;
+    /**
+     * @return distance store of the city file, mapped from the local copy of the distributed
+     * cache, or straight from its path when the job runs locally without the cache
+     */
+    static synchronized DistanceStore distancesOf(Configuration conf) throws IOException {
+        if (taskDistances == null) {
+            Path cities = new Path(conf.get(CITIES));
+            Path local = cities;
+            Path[] cached = DistributedCache.getLocalCacheFiles(conf);
+            if (cached != null) {
+                for (Path path : cached) {
+                    if (path.getName().equals(cities.getName())) {
+                        local = path;
                     }
                 }
-                temperature *= 1 - COOLING_RATE;
             }
-            // Emit the best tour and its distance
-            valueOut.set(currentDistance + "#" + Arrays.toString(currentTour));
-            context.write(keyOut, valueOut);
+            taskDistances = DistanceStore.create(CityTable.mapBinary(new File(local.toUri().getPath())));
         }
+        return taskDistances;
+    }
 
-        private int[] generateInitialTour(Random random) {
-            List<Integer> tour = new ArrayList<>();
-            for (int i = 0; i < cities.size(); i++) {
-                tour.add(i);
-            }
-            Collections.shuffle(tour, random);
-            return tour.stream().mapToInt(Integer::intValue).toArray();
+    /**
+     * Submit one annealing job and wait for it.
+     *
+     * @param startTours output of the previous round to warm-start from, null for random starts
+     */
+    private static boolean runRound(Configuration conf, Path input, Path output, double temperature,
+                                    Path startTours, int round) throws Exception {
+        Configuration roundConf = new Configuration(conf);
+        roundConf.set(TEMPERATURE, String.valueOf(temperature));
+        if (startTours != null) {
+            roundConf.set(START_TOURS, startTours.toString());
+        }
+        Job job = new Job(roundConf, "SimulatedAnnealingTSP round " + round);
+        job.setJarByClass(SimulatedAnnealingTSP.class);
+        // the job holds its own copy of the configuration
+        Path cities = new Path(roundConf.get(CITIES));
+        DistributedCache.addCacheFile(cities.getFileSystem(roundConf).makeQualified(cities).toUri(),
+                job.getConfiguration());
+        int threads = roundConf.getInt(MAP_THREADS, 1);
+        if (threads > 1) {
+            // each thread runs its own TSPMapper over the seeds of the split
+            job.setMapperClass(MultithreadedMapper.class);
+            MultithreadedMapper.setMapperClass(job, TSPMapper.class);
+            MultithreadedMapper.setNumberOfThreads(job, threads);
+        } else {
+            job.setMapperClass(TSPMapper.class);
+        }
+        job.setCombinerClass(TSPReducer.class);
+        job.setReducerClass(TSPReducer.class);
+        job.setMapOutputKeyClass(NullWritable.class);
+        job.setMapOutputValueClass(TourWritable.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(TourWritable.class);
+
+        job.setInputFormatClass(SeedInputFormat.class);
+        if (roundConf.getInt(SeedInputFormat.SEED_COUNT, 0) == 0) {
+            FileInputFormat.setInputPaths(job, input);
         }
 
-        private int[] generateNeighborTour(int[] tour, Random random) {
-            int[] newTour = tour.clone();
-            int city1 = random.nextInt(cities.size());
-            int city2 = random.nextInt(cities.size());
-            int temp = newTour[city1];
-            newTour[city1] = newTour[city2];
-            newTour[city2] = temp;
-            return newTour;
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        SequenceFileOutputFormat.setOutputPath(job, output);
+//        FileOutputFormat.setOutputPath(job, output);
+        return job.waitForCompletion(true);
+    }
+
+    /**
+     * Anneals from every seed of its split. All state is per instance, so it can also run
+     * under MultithreadedMapper, one instance per thread sharing the distance store.
+     */
+    public static class TSPMapper extends Mapper<LongWritable, NullWritable, NullWritable, TourWritable> {
+        private final TourWritable valueOut = new TourWritable();
+        private DistanceStore distances;
+        private double temperature;
+        private String move;
+        private int neighbours;
+        private String initial;
+        // best tour of the previous round, null in the first round
+        private int[] startTour;
+        // true when the keys are stream indices of the master seed rather than seeds
+        private boolean streams;
+        private long masterSeed;
+
+        @Override
+        protected void setup(Context context) throws IOException {
+            Configuration conf = context.getConfiguration();
+            distances = distancesOf(conf);
+            temperature = Double.parseDouble(conf.get(TEMPERATURE, String.valueOf(INITIAL_TEMPERATURE)));
+            String startTours = conf.get(START_TOURS);
+            if (startTours != null) {
+                startTour = TourFiles.readBest(conf, new Path(startTours)).getTour();
+            }
+            move = conf.get(MOVE, Moves.SWAP);
+            neighbours = conf.getInt(NEIGHBOURS, Moves.DEFAULT_NEIGHBOURS);
+            initial = conf.get(INITIAL, Tours.RANDOM);
+            streams = conf.getInt(SeedInputFormat.SEED_COUNT, 0) > 0;
+            masterSeed = conf.getLong(SeedInputFormat.MASTER_SEED, SeedInputFormat.DEFAULT_SEED);
         }
 
-        private double calculateTourDistance(int[] tour) {
-            double distance = 0;
-            for (int i = 1; i < tour.length; i++) {
-                int[] city1 = cities.get(tour[i - 1]);
-                int[] city2 = cities.get(tour[i]);
-                distance += Math.sqrt(Math.pow(city1[0] - city2[0], 2) + Math.pow(city1[1] - city2[1], 2));
+        @Override
+        public void map(LongWritable key, NullWritable value, Context context) throws IOException, InterruptedException {
+            long seed = key.get();
+            // a seed from the seed file is the master seed of its own stream
+            Rng rng = streams ? Rng.stream(masterSeed, (int) seed) : Rng.stream(seed, 0);
+            System.out.println((streams ? "Random stream=" : "Random seed=") + seed);
+            Annealer annealer = new Annealer(distances, Moves.create(move, distances, neighbours), rng);
+            // Warm-start from the previous round or construct the initial tour
+            annealer.reset(startTour != null ? startTour : Tours.create(initial, distances, neighbours, rng));
+            // Perform Simulated Annealing
+            long startTime = System.currentTimeMillis();
+            double bestDistance;
+            try (Trace trace = Trace.open(context.getConfiguration().get(TRACE), (int) (seed & Integer.MAX_VALUE))) {
+                bestDistance = annealer.run(cooling(context.getConfiguration()), NUM_NEIGHBORS, trace);
             }
-            return distance;
+            long saved = CoolingSchedules.fixedSteps(temperature, COOLING_RATE) - annealer.steps();
+            context.getCounter(COUNTERS, "Steps run").increment(annealer.steps());
+            context.getCounter(COUNTERS, "Moves saved").increment(saved * NUM_NEIGHBORS);
+            context.getCounter(COUNTERS, "Moves proposed").increment(annealer.proposed());
+            context.getCounter(COUNTERS, "Moves accepted").increment(annealer.accepted());
+            context.getCounter(COUNTERS, "Moves improving").increment(annealer.improving());
+            context.getCounter(COUNTERS, "Annealing time (ms)").increment(System.currentTimeMillis() - startTime);
+            // Emit the best tour and its distance
+            valueOut.set(bestDistance, annealer.bestTour());
+            context.write(NullWritable.get(), valueOut);
         }
 
-        private boolean acceptMove(double currentDistance, double newDistance, double temperature, Random random) {
-            if (newDistance < currentDistance) {
-                return true;
+        /**
+         * @return a new schedule for one seed, adaptive schedules keep state per run. The
+         * schedule keys of the job are read as the options of the same name without "sa.".
+         */
+        private CoolingSchedule cooling(Configuration conf) {
+            List<String> args = new ArrayList<>();
+            for (String key : new String[]{COOLING, STAGNATION, REHEATS, REHEAT}) {
+                String value = conf.get(key);
+                if (value != null) {
+                    args.add(key.substring("sa.".length()) + "=" + value);
+                }
             }
-            double acceptanceProbability = Math.exp((currentDistance - newDistance) / temperature);
-            return random.nextDouble() < acceptanceProbability;
+            return CoolingSchedules.create(Options.parse(args.toArray(new String[0]), 0), temperature, COOLING_RATE);
         }
     }
 
-    public static class TSPReducer extends Reducer<Text, Text, Text, Text> {
-        private Text valueOut = new Text();
+    /**
+     * Keeps the k best tours, k from {@link #TOP_K} (default 1). Used as the combiner too, so
+     * each map task only sends its best tours to the single reduce key.
+     */
+    public static class TSPReducer extends Reducer<NullWritable, TourWritable, NullWritable, TourWritable> {
+        // best tours in ascending distance
+        private TourWritable[] best;
+
+        @Override
+        protected void setup(Context context) {
+            best = new TourWritable[Math.max(1, context.getConfiguration().getInt(TOP_K, 1))];
+        }
 
         @Override
-        public void reduce(Text key, Iterable<Text> values, Context context)
+        public void reduce(NullWritable key, Iterable<TourWritable> values, Context context)
                 throws IOException, InterruptedException {
-            // Find the best tour and its distance
-            double bestDistance = Double.MAX_VALUE;
-            String bestTourTuple = "";
-            for (Text value : values) {
-                String tourTuple = value.toString();
-                String[] tourArgs = tourTuple.split("#");
-                double distance = Double.parseDouble(tourArgs[0]);
-                if (distance < bestDistance) {
-                    bestDistance = distance;
-                    bestTourTuple = tourTuple;
+            int kept = 0;
+            for (TourWritable value : values) {
+                double distance = value.getDistance();
+                if (kept == best.length && distance >= best[kept - 1].getDistance()) {
+                    continue;
                 }
+                int i = kept == best.length ? kept - 1 : kept++;
+                while (i > 0 && best[i - 1].getDistance() > distance) {
+                    best[i] = best[i - 1];
+                    i--;
+                }
+                // values are reused by Hadoop but their tour array is not
+                best[i] = new TourWritable(distance, value.getTour());
+            }
+            // Emit the best tours and their distance
+            for (int i = 0; i < kept; i++) {
+                context.write(key, best[i]);
             }
-            // Emit the best tour and its distance
-            valueOut.set(bestTourTuple);
-            context.write(key, valueOut);
         }
     }
 }
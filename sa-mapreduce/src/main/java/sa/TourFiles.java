@@ -0,0 +1,42 @@
+package sa;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+
+import java.io.IOException;
+
+/**
+ * Reads the tours a job wrote with SequenceFileOutputFormat.
+ */
+final class TourFiles {
+
+    private TourFiles() {
+    }
+
+    /**
+     * @param dir output directory of a job
+     * @return shortest tour over all part files, or null when there is none
+     */
+    static TourWritable readBest(Configuration conf, Path dir) throws IOException {
+        FileSystem fs = dir.getFileSystem(conf);
+        TourWritable best = null;
+        for (FileStatus status : fs.listStatus(dir)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+            try (SequenceFile.Reader reader = new SequenceFile.Reader(fs, status.getPath(), conf)) {
+                TourWritable value = new TourWritable();
+                while (reader.next(NullWritable.get(), value)) {
+                    if (best == null || value.getDistance() < best.getDistance()) {
+                        best = new TourWritable(value.getDistance(), value.getTour());
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
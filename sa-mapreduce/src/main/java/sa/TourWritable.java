@@ -0,0 +1,62 @@
+package sa;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import sa.core.TourCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A tour with its distance, written as the distance followed by the delta/varint packed tour.
+ * <p>
+ * Every {@link #readFields} allocates a fresh tour array, so a reducer may keep the array of
+ * a value even though Hadoop reuses the Writable itself.
+ */
+public class TourWritable implements Writable {
+    private double distance;
+    private int[] tour;
+
+    public TourWritable() {
+    }
+
+    public TourWritable(double distance, int[] tour) {
+        set(distance, tour);
+    }
+
+    public void set(double distance, int[] tour) {
+        this.distance = distance;
+        this.tour = tour;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public int[] getTour() {
+        return tour;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeDouble(distance);
+        byte[] packed = TourCodec.pack(tour);
+        WritableUtils.writeVInt(out, packed.length);
+        out.write(packed);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        distance = in.readDouble();
+        byte[] packed = new byte[WritableUtils.readVInt(in)];
+        in.readFully(packed);
+        tour = TourCodec.unpack(packed);
+    }
+
+    @Override
+    public String toString() {
+        return distance + "#" + Arrays.toString(tour);
+    }
+}
@@ -1,14 +1,30 @@
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.serializer.KryoSerializer;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
-import scala.Tuple2;
+import sa.core.Annealer;
+import sa.core.Checkpoint;
+import sa.core.Checkpointer;
+import sa.core.CityLoader;
+import sa.core.CityTable;
+import sa.core.CoolingSchedule;
+import sa.core.CoolingSchedules;
+import sa.core.Decomposition;
+import sa.core.DistanceStore;
+import sa.core.Move;
+import sa.core.Moves;
+import sa.core.Options;
+import sa.core.Rng;
+import sa.core.TourCodec;
+import sa.core.Tours;
+import sa.core.Trace;
 
 public class SimulatedAnnealingSpark implements Serializable {
     // neighbors for each round of SA
@@ -17,123 +33,534 @@ public class SimulatedAnnealingSpark implements Serializable {
     private final static double INI_TEMPERATURE = 1000;
     // Cooling rate
     private final static double COOLING_RATE = 0.003;
+    // temperature steps between best tour exchanges in island mode
+    private final static int EXCHANGE_INTERVAL = 50;
+    // tours of at least this many cities travel delta/varint packed
+    private final static int PACK_THRESHOLD = 4096;
+    // cities per region in region mode
+    private final static int REGION_SIZE = 5000;
+    // positions on each side of a region join searched by the boundary repair
+    private final static int REPAIR_WINDOW = 50;
+    // driver temperature steps between checkpoints
+    private final static int CHECKPOINT_INTERVAL = 100;
+
+    // distance store of the broadcast city table, built once per executor JVM
+    private static CityTable executorCities;
+    private static DistanceStore executorDistances;
+
+    // driver checkpoint file, null without checkpoints, and its background writer
+    private transient File checkpointFile;
+    private transient Checkpointer checkpointer;
+    private int checkpointSteps;
+    private boolean resume;
 
     /**
-     * @return list of cities with a pair of index
+     * @param args key=value options: cities=cities.txt or a TSPLIB .tsp file, mode=steps|islands|regions, move=swap|2opt, neighbours=k,
+     *             seed=master seed of the driver's and the chains' random streams, initial=random|hilbert|nearest|greedy tour,
+     *             chains=annealing chains, exchange=steps between best tour exchanges in island mode,
+     *             region=cities per region and window=boundary repair positions in region mode,
+     *             cooling=geometric|lundy-mees|acceptance, stagnation=steps without a new best before
+     *             reheating or stopping, reheats, reheat, trace=driver step trace file, .csv for text,
+     *             otherwise binary, checkpoint=driver checkpoint file in steps and islands mode, where the islands are saved next to it,
+     *             checkpoint-steps=steps between checkpoints, resume=true to continue from the checkpoint
      */
-    private List<int[]> readCities() {
-        // Create a list of cities and read cities from file
-        String citiesFile = "cities.txt";
-        File file = new File(citiesFile);
-        List<int[]> cities = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new FileInputStream(file))) {
-		while (scanner.hasNext()) {
-		    String line = scanner.next();
-		    if (!"".equals(line.trim())) {
-			String[] lineArgs = line.split("=");
-			String[] positions = lineArgs[1].split(",");
-			cities.add(new int[]{Integer.parseInt(positions[0]), Integer.parseInt(positions[1])});
-		    }
-		}
-	    } catch (IOException e) {
-            e.printStackTrace();
-        }
-        System.out.println(">>> Read Cities size=" + cities.size() + " on=" + file.getAbsolutePath());
-        return cities;
-    }
-
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args, 0);
         // Create a Spark Context
         SparkConf sparkConf = new SparkConf().setAppName("SimulatedAnnealingSpark")
-	    .setMaster("local[2]").set("spark.executor.memory", "2g");
+	    .setMaster("local[2]").set("spark.executor.memory", "2g")
+            .set("spark.serializer", KryoSerializer.class.getName())
+            .registerKryoClasses(new Class<?>[]{CityTable.class, CityTable[].class, ChainResult.class,
+                    Island.class, Checkpoint.class, int[].class, byte[].class, double[].class, long[].class});
         JavaSparkContext sc = new JavaSparkContext(sparkConf);
         // log level
         sc.setLogLevel("WARN");
         SimulatedAnnealingSpark sa = new SimulatedAnnealingSpark();
-        sa.run(sc);
+        sa.run(sc, options);
     }
 
-    public void run(JavaSparkContext sc) {
-        //random with seed
-        Random rand = new Random(534);
+    public void run(JavaSparkContext sc, Options options) throws IOException {
+        // the driver's stream, the chains derive theirs from seeds it draws
+        Rng rand = Rng.stream(options.getLong("seed", 534), 0);
         // read city list
-        final List<int[]> cities = readCities();
+        File file = new File(options.get("cities", "cities.txt"));
+        final DistanceStore distances = DistanceStore.create(CityLoader.load(file));
+        System.out.println(">>> Read Cities size=" + distances.size() + " on=" + file.getAbsolutePath());
+        // ship the city table once per executor instead of in every task closure
+        final Broadcast<CityTable> cities = sc.broadcast(distances.cities());
         // start time
         long startTime = System.currentTimeMillis();
         // Initial solution
-        List<Integer> currentSolution = generateInitialSolution(cities.size());
-        List<Integer> bestSolution = new ArrayList<>(currentSolution);
-        double bestCost = calculateCost(bestSolution, cities);
+        int[] initialSolution = initialTour(options, distances, rand);
+        ChainResult initial = new ChainResult(distances.tourCost(initialSolution), initialSolution);
+        String mode = options.get("mode", "steps");
+        String checkpoint = options.get("checkpoint", null);
+        checkpointFile = checkpoint == null ? null : new File(checkpoint);
+        checkpointSteps = Math.max(1, options.getInt("checkpoint-steps", CHECKPOINT_INTERVAL));
+        resume = checkpointFile != null && options.getBoolean("resume", false);
+        checkpointer = new Checkpointer();
+        ChainResult best;
+        try (Trace trace = Trace.open(options.get("trace", null), -1)) {
+            if ("islands".equals(mode)) {
+                best = runIslands(sc, options, cities, initial, rand, trace);
+            } else if ("regions".equals(mode)) {
+                best = runRegions(sc, options, distances, rand, trace);
+            } else {
+                best = runSteps(sc, options, cities, initial, rand, trace);
+            }
+            System.out.println(">>> " + trace.summary());
+        } finally {
+            checkpointer.close();
+        }
+        System.out.println(">>>>>>> Result >>>>");
+        System.out.println(">>> Best cost: " + best.bestCost);
+        System.out.println(">>> Best solution: " + Arrays.toString(best.bestTour()));
+        System.out.println(">>> Total time(ms): " + (System.currentTimeMillis() - startTime));
+        sc.close();
+    }
+
+    /**
+     * One Spark job per temperature step: every chain anneals one step from the current
+     * solution, and the driver takes each chain's resulting tour as a candidate, accepting it
+     * by the Metropolis rule as the baseline driver did with single neighbours. The current
+     * tour can therefore get worse; the best tour is tracked on its own. The chains keep no
+     * state between steps, so the driver's checkpoint is enough to resume bit for bit.
+     */
+    private ChainResult runSteps(JavaSparkContext sc, Options options, Broadcast<CityTable> cities,
+                                 ChainResult initial, Rng rand, Trace trace) throws IOException {
+        int chains = options.getInt("chains", sc.defaultParallelism());
+        ChainResult current = initial;
+        ChainResult best = initial;
         // Set initial temp
-        double temp = INI_TEMPERATURE;
+        CoolingSchedule cooling = CoolingSchedules.create(options, initialTemperature(options), COOLING_RATE);
+        double temp = cooling.initialTemperature();
         double logTemp = temp;
+        long steps = 0;
+        // move counters summed over all chains
+        long proposed = 0, accepted = 0, improving = 0;
+        if (resume) {
+            Checkpoint saved = Checkpoint.read(checkpointFile);
+            saved.restoreDriver(rand, cooling);
+            temp = saved.temperature;
+            logTemp = temp;
+            current = new ChainResult(saved.cost, saved.tour);
+            best = new ChainResult(saved.bestCost, saved.bestTour);
+            steps = saved.extra[0];
+            proposed = saved.extra[1];
+            accepted = saved.extra[2];
+            improving = saved.extra[3];
+            System.out.println(">>> Resumed at step " + steps + " temperature = " + temp);
+        }
+        List<Integer> chainIds = new ArrayList<>(chains);
+        for (int i = 0; i < chains; i++) {
+            chainIds.add(i);
+        }
         // Start the SA outer loop to cool down the system
-        while (temp > 1) {
-            List<List<Integer>> neighbors = generateNeighbors(currentSolution, rand);
-            JavaRDD<List<Integer>> neighborsRDD = sc.parallelize(neighbors, NUM_NEIGHBORS);
-            List<Tuple2<List<Integer>, Double>> solutionsAndCosts = neighborsRDD
-		.map(solution -> new Tuple2<>(solution, calculateCost(solution, cities)))
-		.collect();
-            for (Tuple2<List<Integer>, Double> solutionAndCost : solutionsAndCosts) {
-                List<Integer> newSolution = solutionAndCost._1;
-                double newCost = solutionAndCost._2;
-                if (acceptanceProbability(calculateCost(currentSolution, cities), newCost, temp) > Math.random()) {
-                    currentSolution = new ArrayList<>(newSolution);
+        while (!cooling.isFrozen(temp)) {
+            // every chain takes its own stream of the step's seed
+            final long stepSeed = rand.nextLong();
+            final ChainResult start = current;
+            final double stepTemp = temp;
+            long collectStart = System.nanoTime();
+            List<ChainResult> results = sc.parallelize(chainIds, chains)
+                    .map(id -> anneal(cities, options, start.tour(), stepTemp, 1, Rng.stream(stepSeed, id)))
+                    .collect();
+            trace.communication("collect", collectStart);
+            double acceptance = 0;
+            for (ChainResult result : results) {
+                proposed += result.proposed;
+                accepted += result.accepted;
+                improving += result.improving;
+                acceptance += result.acceptance / results.size();
+                if (Annealer.accept(result.cost - current.cost, temp, rand)) {
+                    current = result;
                 }
-                if (newCost < bestCost) {
-                    bestSolution = new ArrayList<>(newSolution);
-                    bestCost = newCost;
-                    System.out.println(">>> New solution cost: " + newCost + " solution: " + newSolution);
+                if (result.bestCost < best.bestCost) {
+                    best = result;
+                    System.out.println(">>> New solution cost: " + best.bestCost + " temperature = " + temp);
                 }
             }
-            temp *= 1 - COOLING_RATE;
+            trace.step(temp, current.cost, best.bestCost, acceptance, proposed, accepted, improving);
+            cooling.observe(acceptance, best.bestCost);
+            temp = cooling.next(temp);
+            steps++;
+            if (checkpointFile != null && steps % checkpointSteps == 0) {
+                checkpointer.submit(checkpointFile, Checkpoint.ofDriver(temp, current.cost, current.tour(),
+                        best.bestCost, best.bestTour(), rand, cooling, steps, proposed, accepted, improving));
+            }
             if (temp < logTemp * 0.8) {
                 logTemp = temp;
                 System.out.println(">>> temperature = " + temp);
             }
         }
-        System.out.println(">>>>>>> Result >>>>");
-        System.out.println(">>> Best cost: " + bestCost);
-        System.out.println(">>> Best solution: " + bestSolution);
-        System.out.println(">>> Total time(ms): " + (System.currentTimeMillis() - startTime));
-        sc.close();
+        reportSteps(steps, chains, cooling.initialTemperature());
+        return best;
     }
 
-    private List<Integer> generateInitialSolution(int size) {
-        List<Integer> initialSolution = new ArrayList<>();
-        for (int j = 0; j < size; j++) {
-            initialSolution.add(j);
+    /**
+     * Island mode: every partition keeps its own annealing chain, whose tour, generator and
+     * schedule state live in a cached RDD of {@link Island}s, and advances it by a whole
+     * exchange interval per job. Between intervals only the best tour travels: the driver gets
+     * it from a treeReduce and broadcasts it, and an island continues from it only if it beats
+     * the island's own best, as the MPI islands do. Every interval starts at the driver's
+     * temperature, so the reheats and early stop of its schedule, fed with the islands' mean
+     * acceptance rate, reach all islands.
+     * <p>
+     * A checkpoint collects the islands and writes them to one of two slots next to the driver
+     * checkpoint, which names the slot and is written once the islands' files are on disk.
+     */
+    private ChainResult runIslands(JavaSparkContext sc, Options options, Broadcast<CityTable> cities,
+                                   ChainResult initial, Rng rand, Trace trace) throws IOException {
+        final int exchange = options.getInt("exchange", EXCHANGE_INTERVAL);
+        int chains = options.getInt("chains", sc.defaultParallelism());
+        ChainResult best = initial;
+        CoolingSchedule cooling = CoolingSchedules.create(options, initialTemperature(options), COOLING_RATE);
+        double temp = cooling.initialTemperature();
+        long steps = 0;
+        int slot = 0;
+        JavaRDD<Island> islands;
+        if (resume) {
+            Checkpoint saved = Checkpoint.read(checkpointFile);
+            saved.restoreDriver(rand, cooling);
+            temp = saved.temperature;
+            best = new ChainResult(saved.bestCost, saved.bestTour);
+            steps = saved.extra[0];
+            List<Island> states = new ArrayList<>(chains);
+            for (int i = 0; i < chains; i++) {
+                states.add(new Island(Checkpoint.read(Checkpoint.file(slotFile((int) saved.extra[1]), i)), 0));
+            }
+            // keep the slot the driver checkpoint names until the next checkpoint is written
+            slot = 1 - (int) saved.extra[1];
+            islands = sc.parallelize(states, chains).cache();
+            System.out.println(">>> Resumed at step " + steps + " temperature = " + temp);
+        } else {
+            List<Integer> islandIds = new ArrayList<>(chains);
+            for (int i = 0; i < chains; i++) {
+                islandIds.add(i);
+            }
+            final Broadcast<ChainResult> start = sc.broadcast(initial);
+            final long seed = rand.nextLong();
+            islands = sc.parallelize(islandIds, chains)
+                    .map(id -> startIsland(cities, options, start.value().bestTour(), Rng.stream(seed, id), id))
+                    .cache();
+        }
+        long checkpointed = steps;
+        while (!cooling.isFrozen(temp)) {
+            long exchangeStart = System.nanoTime();
+            final Broadcast<ChainResult> migrant = sc.broadcast(best);
+            final double intervalTemp = temp;
+            JavaRDD<Island> advanced = islands
+                    .map(island -> advance(cities, options, island, migrant.value(), intervalTemp, exchange))
+                    .cache();
+            ChainResult intervalBest = advanced.map(ChainResult::new).treeReduce(ChainResult::merge);
+            // the broadcast stays on the driver in case a lost partition is recomputed
+            migrant.unpersist();
+            islands.unpersist();
+            islands = advanced;
+            // the job runs the whole interval, so this is exchange plus annealing time
+            trace.communication("treeReduce", exchangeStart);
+            // the islands' counters run on over the intervals, so the merged ones are the totals
+            trace.step(temp, intervalBest.lowestCost, Math.min(intervalBest.bestCost, best.bestCost), intervalBest.acceptance,
+                    intervalBest.proposed, intervalBest.accepted, intervalBest.improving);
+            if (intervalBest.bestCost < best.bestCost) {
+                best = intervalBest;
+                System.out.println(">>> New solution cost: " + best.bestCost + " temperature = " + temp);
+            }
+            // the islands walked the interval's temperatures on their own, the driver follows
+            for (int i = 0; i < exchange && !cooling.isFrozen(temp); i++) {
+                cooling.observe(intervalBest.acceptance, best.bestCost);
+                temp = cooling.next(temp);
+                steps++;
+            }
+            if (checkpointFile != null && steps - checkpointed >= checkpointSteps) {
+                checkpointed = steps;
+                for (Island island : islands.collect()) {
+                    checkpointer.submit(Checkpoint.file(slotFile(slot), island.state.chain), island.state);
+                }
+                try {
+                    checkpointer.flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing the island checkpoints", e);
+                }
+                Checkpoint.ofDriver(temp, best.bestCost, best.bestTour(), best.bestCost, best.bestTour(),
+                        rand, cooling, steps, slot).write(checkpointFile);
+                slot = 1 - slot;
+            }
         }
-        Collections.shuffle(initialSolution);
-        return initialSolution;
+        islands.unpersist();
+        reportSteps(steps, chains, cooling.initialTemperature());
+        return best;
+    }
+
+    /**
+     * @return file prefix of the island checkpoints in a slot
+     */
+    private String slotFile(int slot) {
+        return checkpointFile.getPath() + ".slot" + slot;
     }
 
-    private List<List<Integer>> generateNeighbors(List<Integer> currentSolution, Random rand) {
-        List<List<Integer>> neighbors = new ArrayList<>();
-        for (int i = 0; i < NUM_NEIGHBORS; i++) {
-            List<Integer> newSolution = new ArrayList<>(currentSolution);
-            int swapIndex1 = rand.nextInt(newSolution.size());
-            int swapIndex2 = rand.nextInt(newSolution.size());
-            Collections.swap(newSolution, swapIndex1, swapIndex2);
-            neighbors.add(newSolution);
+    /**
+     * Region mode for large instances, see {@link Decomposition}: one task anneals each
+     * spatial region's sub-tour over the whole schedule, and the driver stitches the region
+     * tours and repairs them around the joins. The region tables are broadcast once.
+     */
+    private ChainResult runRegions(JavaSparkContext sc, Options options, DistanceStore distances, Rng rand,
+                                   Trace trace) {
+        Decomposition decomposition = Decomposition.of(distances.cities(), options.getInt("region", REGION_SIZE));
+        CityTable[] tables = new CityTable[decomposition.regions()];
+        List<Integer> regionIds = new ArrayList<>(tables.length);
+        for (int r = 0; r < tables.length; r++) {
+            tables[r] = decomposition.region(r);
+            regionIds.add(r);
         }
-        return neighbors;
+        final Broadcast<CityTable[]> regions = sc.broadcast(tables);
+        final long seed = rand.nextLong();
+        long collectStart = System.nanoTime();
+        List<ChainResult> results = sc.parallelize(regionIds, tables.length)
+                .map(r -> annealRegion(regions.value()[r], options, Rng.stream(seed, r)))
+                .collect();
+        trace.communication("collect", collectStart);
+        regions.unpersist();
+        int[][] subTours = new int[results.size()][];
+        long proposed = 0, accepted = 0, improving = 0;
+        for (int r = 0; r < subTours.length; r++) {
+            ChainResult result = results.get(r);
+            subTours[r] = result.bestTour();
+            proposed += result.proposed;
+            accepted += result.accepted;
+            improving += result.improving;
+        }
+        int[] tour = decomposition.stitch(distances, subTours);
+        double stitched = distances.tourCost(tour);
+        int repairs = decomposition.repair(distances, tour, options.getInt("window", REPAIR_WINDOW));
+        ChainResult best = new ChainResult(distances.tourCost(tour), tour);
+        // the regions ran their schedules in the tasks, so the driver records one step
+        trace.step(initialTemperature(options), best.cost, best.bestCost, 0, proposed, accepted, improving);
+        System.out.println(">>> " + tables.length + " regions stitched cost=" + stitched
+                + ", " + repairs + " boundary repairs cost=" + best.bestCost);
+        return best;
+    }
+
+    /**
+     * @return best open tour of a region over the whole schedule, in the region's local city indices
+     */
+    private static ChainResult annealRegion(CityTable cities, Options options, Rng rng) {
+        DistanceStore distances = DistanceStore.create(cities);
+        Annealer annealer = new Annealer(distances, move(options, distances), rng);
+        annealer.reset(initialTour(options, distances, rng));
+        annealer.run(CoolingSchedules.create(options, initialTemperature(options), COOLING_RATE), NUM_NEIGHBORS);
+        return new ChainResult(annealer);
     }
 
-    private double acceptanceProbability(double currentCost, double newCost, double temp) {
-        if (newCost < currentCost) {
-            return 1.0;
+    /**
+     * Anneal the given number of temperature steps, NUM_NEIGHBORS moves each, from the start
+     * solution. The chain follows the configured schedule from temp; stagnation is left to the driver.
+     *
+     * @return current and best tour of the chain
+     */
+    private static ChainResult anneal(Broadcast<CityTable> cities, Options options,
+                                      int[] start, double temp, int steps, Rng rng) {
+        DistanceStore distances = distancesOf(cities);
+        Annealer annealer = new Annealer(distances, move(options, distances), rng);
+        CoolingSchedule cooling = chainCooling(options);
+        annealer.reset(start);
+        for (int i = 0; i < steps && !cooling.isFrozen(temp); i++) {
+            annealer.step(temp, NUM_NEIGHBORS);
+            cooling.observe(annealer.acceptanceRate(), annealer.bestCost());
+            temp = cooling.next(temp);
         }
-        return Math.exp((currentCost - newCost) / temp);
+        return new ChainResult(annealer);
+    }
+
+    /**
+     * @return an island at the start of its schedule, annealing from the start tour with its own stream
+     */
+    private static Island startIsland(Broadcast<CityTable> cities, Options options, int[] start, Rng rng, int id) {
+        DistanceStore distances = distancesOf(cities);
+        Annealer annealer = new Annealer(distances, move(options, distances), rng);
+        CoolingSchedule cooling = chainCooling(options);
+        annealer.reset(start);
+        return new Island(annealer.checkpoint(id, cooling.initialTemperature(), cooling), 0);
     }
 
-    private double calculateCost(List<Integer> solution, List<int[]> cities) {
-        double sum = 0;
-        for (int i = 1; i < solution.size(); i++) {
-            int[] city1 = cities.get(solution.get(i - 1));
-            int[] city2 = cities.get(solution.get(i));
-            sum += Math.sqrt(Math.pow(city1[0] - city2[0], 2) + Math.pow(city1[1] - city2[1], 2));
+    /**
+     * Continue an island from where it stopped for the given number of temperature steps from
+     * the driver's temperature, first taking over the migrant tour if it beats the island's best.
+     */
+    private static Island advance(Broadcast<CityTable> cities, Options options, Island island,
+                                  ChainResult migrant, double temp, int steps) {
+        DistanceStore distances = distancesOf(cities);
+        // the restore replaces the stream's state with the island's own
+        Annealer annealer = new Annealer(distances, move(options, distances), Rng.stream(0, 0));
+        CoolingSchedule cooling = chainCooling(options);
+        annealer.restore(island.state, cooling);
+        if (migrant.bestCost < annealer.bestCost()) {
+            annealer.reset(migrant.bestTour());
+        }
+        double acceptance = island.acceptance;
+        for (int i = 0; i < steps && !cooling.isFrozen(temp); i++) {
+            annealer.step(temp, NUM_NEIGHBORS);
+            acceptance = annealer.acceptanceRate();
+            cooling.observe(acceptance, annealer.bestCost());
+            temp = cooling.next(temp);
+        }
+        return new Island(annealer.checkpoint(island.state.chain, temp, cooling), acceptance);
+    }
+
+    /**
+     * @return the configured schedule without stagnation control, which is left to the driver
+     */
+    private static CoolingSchedule chainCooling(Options options) {
+        return CoolingSchedules.create(options.get("cooling", CoolingSchedules.GEOMETRIC),
+                initialTemperature(options), COOLING_RATE);
+    }
+
+    private static int[] initialTour(Options options, DistanceStore distances, Rng rng) {
+        return Tours.create(options.get("initial", Tours.RANDOM), distances,
+                options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS), rng);
+    }
+
+    /**
+     * @return starting temperature, lowered to match a constructed initial tour
+     */
+    private static double initialTemperature(Options options) {
+        return Tours.temperature(options.get("initial", Tours.RANDOM), INI_TEMPERATURE);
+    }
+
+    private static Move move(Options options, DistanceStore distances) {
+        return Moves.create(options.get("move", Moves.SWAP), distances,
+                options.getInt("neighbours", Moves.DEFAULT_NEIGHBOURS));
+    }
+
+    /**
+     * Print the driver's temperature steps against the fixed geometric schedule from the same
+     * starting temperature, for every chain.
+     */
+    private static void reportSteps(long steps, int chains, double initialTemperature) {
+        long fixed = CoolingSchedules.fixedSteps(initialTemperature, COOLING_RATE);
+        System.out.println(">>> Steps run: " + steps + " of " + fixed + " fixed, moves saved: "
+                + (fixed - steps) * NUM_NEIGHBORS * chains);
+    }
+
+    private static synchronized DistanceStore distancesOf(Broadcast<CityTable> cities) {
+        CityTable table = cities.value();
+        if (table != executorCities) {
+            executorDistances = DistanceStore.create(table);
+            executorCities = table;
+        }
+        return executorDistances;
+    }
+
+    /**
+     * Current and best tour of a chain with their costs and move counters, delta/varint packed
+     * on large instances.
+     */
+    static final class ChainResult implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // the chain's current tour, where annealing continues from
+        final double cost;
+        final double bestCost;
+        // acceptance rate of the chain's last step, averaged over merged chains
+        final double acceptance;
+        // lowest current cost and number of the merged chains
+        final double lowestCost;
+        final int chains;
+        // moves proposed, accepted and improving, summed over merged chains
+        final long proposed;
+        final long accepted;
+        final long improving;
+        private final int[] tour;
+        private final byte[] packedTour;
+        // null when the best tour is the current one
+        private final int[] bestTour;
+        private final byte[] packedBestTour;
+
+        /**
+         * A tour that is both the current and the best one.
+         */
+        ChainResult(double cost, int[] tour) {
+            this(cost, tour, cost, tour, 0, 0, 0, 0);
+        }
+
+        ChainResult(Annealer annealer) {
+            this(annealer.cost(), annealer.tour(), annealer.bestCost(), annealer.bestTour(), annealer.acceptanceRate(),
+                    annealer.proposed(), annealer.accepted(), annealer.improving());
+        }
+
+        ChainResult(Island island) {
+            this(island.state.cost, island.state.tour, island.state.bestCost, island.state.bestTour, island.acceptance,
+                    island.state.proposed, island.state.accepted, island.state.improving);
+        }
+
+        private ChainResult(double cost, int[] tour, double bestCost, int[] bestTour, double acceptance,
+                            long proposed, long accepted, long improving) {
+            this.cost = cost;
+            this.bestCost = bestCost;
+            this.acceptance = acceptance;
+            this.lowestCost = cost;
+            this.chains = 1;
+            this.proposed = proposed;
+            this.accepted = accepted;
+            this.improving = improving;
+            boolean pack = tour.length >= PACK_THRESHOLD;
+            this.tour = pack ? null : tour;
+            this.packedTour = pack ? TourCodec.pack(tour) : null;
+            boolean same = Arrays.equals(tour, bestTour);
+            this.bestTour = same || pack ? null : bestTour;
+            this.packedBestTour = same || !pack ? null : TourCodec.pack(bestTour);
+        }
+
+        private ChainResult(ChainResult best, ChainResult other) {
+            this.cost = best.cost;
+            this.bestCost = best.bestCost;
+            this.chains = best.chains + other.chains;
+            this.acceptance = (best.acceptance * best.chains + other.acceptance * other.chains) / chains;
+            this.lowestCost = Math.min(best.lowestCost, other.lowestCost);
+            this.proposed = best.proposed + other.proposed;
+            this.accepted = best.accepted + other.accepted;
+            this.improving = best.improving + other.improving;
+            this.tour = best.tour;
+            this.packedTour = best.packedTour;
+            this.bestTour = best.bestTour;
+            this.packedBestTour = best.packedBestTour;
+        }
+
+        /**
+         * @return the result with the cheaper best tour, carrying the move counters, mean
+         * acceptance rate and lowest current cost of both
+         */
+        static ChainResult merge(ChainResult a, ChainResult b) {
+            return a.bestCost <= b.bestCost ? new ChainResult(a, b) : new ChainResult(b, a);
+        }
+
+        int[] tour() {
+            return tour != null ? tour : TourCodec.unpack(packedTour);
+        }
+
+        int[] bestTour() {
+            if (bestTour != null) {
+                return bestTour;
+            }
+            return packedBestTour != null ? TourCodec.unpack(packedBestTour) : tour();
+        }
+    }
+
+    /**
+     * Annealing chain of a partition in island mode, kept between exchange intervals.
+     */
+    static final class Island implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        // tours, generator, schedule and counters of the chain; the driver sets the temperature
+        final Checkpoint state;
+        // acceptance rate of the chain's last step
+        final double acceptance;
+
+        Island(Checkpoint state, double acceptance) {
+            this.state = state;
+            this.acceptance = acceptance;
         }
-        return sum;
     }
 }